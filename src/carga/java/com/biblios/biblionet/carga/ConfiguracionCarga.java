@@ -0,0 +1,77 @@
+package com.biblios.biblionet.carga;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Parámetros de una ejecución del generador de carga, leídos de propiedades del sistema "carga.*".
+ * Desde Gradle se pasan como {@code ./gradlew loadTest -Pcarga.hilos=32 -Pcarga.duracion=60}.
+ */
+final class ConfiguracionCarga {
+
+    /**
+     * URL base de una instancia ya en ejecución; si está vacía se arranca una instancia embebida con H2 en memoria.
+     */
+    final String url;
+    final int hilos;
+    final int calentamientoSegundos;
+    final int duracionSegundos;
+    final int usuarios;
+    final int libros;
+    final int prestamosIniciales;
+    final Map<Operacion, Integer> mezcla;
+    final double tasaErrorMaxima;
+
+    private ConfiguracionCarga(String url, int hilos, int calentamientoSegundos, int duracionSegundos,
+                               int usuarios, int libros, int prestamosIniciales,
+                               Map<Operacion, Integer> mezcla, double tasaErrorMaxima) {
+        this.url = url;
+        this.hilos = hilos;
+        this.calentamientoSegundos = calentamientoSegundos;
+        this.duracionSegundos = duracionSegundos;
+        this.usuarios = usuarios;
+        this.libros = libros;
+        this.prestamosIniciales = prestamosIniciales;
+        this.mezcla = mezcla;
+        this.tasaErrorMaxima = tasaErrorMaxima;
+    }
+
+    /**
+     * Construye la configuración a partir de las propiedades del sistema, con valores por defecto.
+     *
+     * @return Configuración de la ejecución
+     */
+    static ConfiguracionCarga desdePropiedades() {
+        return new ConfiguracionCarga(
+                System.getProperty("carga.url", "").trim(),
+                Integer.getInteger("carga.hilos", 16),
+                Integer.getInteger("carga.calentamiento", 5),
+                Integer.getInteger("carga.duracion", 30),
+                Integer.getInteger("carga.usuarios", 500),
+                Integer.getInteger("carga.libros", 2000),
+                Integer.getInteger("carga.prestamos", 300),
+                leerMezcla(System.getProperty("carga.mezcla", "busqueda:40,disponibilidad:40,prestamo:10,devolucion:10")),
+                Double.parseDouble(System.getProperty("carga.tasaErrorMaxima", "0.01")));
+    }
+
+    /**
+     * Interpreta una mezcla de operaciones con el formato "operacion:peso,operacion:peso".
+     */
+    private static Map<Operacion, Integer> leerMezcla(String texto) {
+        Map<Operacion, Integer> mezcla = new EnumMap<>(Operacion.class);
+        for (String parte : texto.split(",")) {
+            String[] par = parte.trim().split(":");
+            if (par.length != 2) {
+                throw new IllegalArgumentException("Mezcla inválida: " + parte);
+            }
+            int peso = Integer.parseInt(par[1].trim());
+            if (peso > 0) {
+                mezcla.put(Operacion.valueOf(par[0].trim().toUpperCase()), peso);
+            }
+        }
+        if (mezcla.isEmpty()) {
+            throw new IllegalArgumentException("La mezcla de operaciones no puede estar vacía");
+        }
+        return mezcla;
+    }
+}
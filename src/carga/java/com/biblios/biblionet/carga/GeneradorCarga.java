@@ -0,0 +1,284 @@
+package com.biblios.biblionet.carga;
+
+import com.biblios.biblionet.BiblionetApplication;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.IntStream;
+
+/**
+ * Generador de carga autocontenido para Biblionet.
+ * <p>
+ * Arranca la aplicación con una base H2 en memoria (o usa la instancia indicada en {@code carga.url}),
+ * crea usuarios, libros y préstamos, y ejecuta durante un tiempo fijo una mezcla configurable de
+ * búsquedas, consultas de disponibilidad, préstamos y devoluciones desde varios hilos. Al terminar
+ * imprime el throughput, los percentiles de latencia y la tasa de errores de cada operación.
+ * <p>
+ * Se ejecuta con {@code ./gradlew loadTest}; los parámetros se describen en {@link ConfiguracionCarga}.
+ */
+public final class GeneradorCarga {
+
+    private static final String[] PALABRAS = {
+            "sombra", "viento", "ciudad", "noche", "mar", "fuego", "tiempo", "memoria",
+            "silencio", "camino", "jardin", "espejo", "laberinto", "rio", "luna", "sol"
+    };
+
+    private static final String[] GENEROS = { "Novela", "Poesia", "Ensayo", "Historia", "Ciencia" };
+
+    private static final String SUCURSAL = "CENTRAL";
+    private static final int EJEMPLARES_POR_LIBRO = 5;
+
+    private final ConfiguracionCarga config;
+    private final HttpClient http;
+    private final ObjectMapper json = new ObjectMapper().findAndRegisterModules();
+    private final ConcurrentLinkedQueue<Long> prestamosActivos = new ConcurrentLinkedQueue<>();
+    private final Operacion[] ruleta;
+    private String base;
+
+    private GeneradorCarga(ConfiguracionCarga config) {
+        this.config = config;
+        this.http = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        List<Operacion> opciones = new ArrayList<>();
+        config.mezcla.forEach((operacion, peso) -> {
+            for (int i = 0; i < peso; i++) {
+                opciones.add(operacion);
+            }
+        });
+        this.ruleta = opciones.toArray(new Operacion[0]);
+    }
+
+    /**
+     * Punto de entrada del generador de carga.
+     *
+     * @param args No se usan; la configuración se lee de las propiedades del sistema "carga.*"
+     * @throws Exception si falla el arranque o la siembra de datos
+     */
+    public static void main(String[] args) throws Exception {
+        ConfiguracionCarga config = ConfiguracionCarga.desdePropiedades();
+        ConfigurableApplicationContext contexto = null;
+        String base = config.url;
+        if (base.isEmpty()) {
+            contexto = arrancarAplicacion();
+            base = "http://localhost:" + contexto.getEnvironment().getProperty("local.server.port");
+        }
+
+        boolean superaErrores;
+        try {
+            GeneradorCarga generador = new GeneradorCarga(config);
+            generador.base = base;
+            generador.sembrar();
+            superaErrores = generador.ejecutar();
+        } finally {
+            if (contexto != null) {
+                contexto.close();
+            }
+        }
+        System.exit(superaErrores ? 1 : 0);
+    }
+
+    /**
+     * Arranca la aplicación en un puerto libre con una base de datos en memoria,
+     * sin registro de SQL, tareas programadas, control de admisión ni límite de préstamos por usuario.
+     */
+    private static ConfigurableApplicationContext arrancarAplicacion() {
+        // Como argumentos de línea de comandos, para que prevalezcan sobre application.properties.
+        return new SpringApplication(BiblionetApplication.class).run(
+                "--server.port=0",
+                "--spring.datasource.url=jdbc:h2:mem:carga;DB_CLOSE_DELAY=-1",
+                "--spring.jpa.hibernate.ddl-auto=create-drop",
+                "--spring.jpa.show-sql=false",
+                "--logging.level.org.hibernate.SQL=WARN",
+                "--biblionet.archivo.cron=-",
+                "--biblionet.admision.habilitada=false",
+                "--biblionet.prestamos.limite-por-usuario=0");
+    }
+
+    /**
+     * Crea los usuarios, libros (con sus ejemplares en una sucursal) y préstamos iniciales a través de la API.
+     */
+    private void sembrar() {
+        long inicio = System.nanoTime();
+        IntStream.range(0, config.usuarios).parallel().forEach(i ->
+                enviar("POST", "/api/usuarios/crear",
+                        "{\"nombre\":\"Usuario " + i + "\",\"numeroCuenta\":\"" + cuenta(i) + "\"}"));
+        IntStream.range(0, config.libros).parallel().forEach(i ->
+                enviar("POST", "/api/libros/crear", "{\"titulo\":\"" + titulo(i) + "\",\"autor\":\"Autor " + (i % 97)
+                        + "\",\"isbn\":\"" + isbn(i) + "\",\"genero\":\"" + GENEROS[i % GENEROS.length]
+                        + "\",\"fechaPublicacion\":\"2000-01-01\"}"));
+        IntStream.range(0, config.libros).parallel().forEach(i ->
+                enviar("POST", "/api/existencias/crear", "{\"isbn\":\"" + isbn(i) + "\",\"sucursal\":\"" + SUCURSAL
+                        + "\",\"cantidad\":" + EJEMPLARES_POR_LIBRO + "}"));
+        IntStream.range(0, Math.min(config.prestamosIniciales, config.libros)).parallel().forEach(i ->
+                crearPrestamo(isbn(i), cuenta(i % config.usuarios)));
+        System.out.printf("Datos sembrados en %d ms: %d usuarios, %d libros, %d préstamos activos%n",
+                (System.nanoTime() - inicio) / 1_000_000, config.usuarios, config.libros, prestamosActivos.size());
+    }
+
+    /**
+     * Ejecuta el calentamiento y la medición, e imprime el informe.
+     *
+     * @return true si la tasa de errores supera el máximo configurado
+     */
+    private boolean ejecutar() throws Exception {
+        System.out.printf("Calentamiento de %d s con %d hilos...%n", config.calentamientoSegundos, config.hilos);
+        correr(config.calentamientoSegundos);
+        System.out.printf("Midiendo durante %d s...%n", config.duracionSegundos);
+        long inicio = System.nanoTime();
+        List<Map<Operacion, RegistroLatencias>> porHilo = correr(config.duracionSegundos);
+        double segundos = (System.nanoTime() - inicio) / 1e9;
+        return informar(combinar(porHilo), segundos);
+    }
+
+    private List<Map<Operacion, RegistroLatencias>> correr(int segundos) throws Exception {
+        long fin = System.nanoTime() + segundos * 1_000_000_000L;
+        ExecutorService hilos = Executors.newFixedThreadPool(config.hilos);
+        try {
+            List<Future<Map<Operacion, RegistroLatencias>>> futuros = new ArrayList<>();
+            for (int i = 0; i < config.hilos; i++) {
+                futuros.add(hilos.submit(() -> trabajar(fin)));
+            }
+            List<Map<Operacion, RegistroLatencias>> resultados = new ArrayList<>();
+            for (Future<Map<Operacion, RegistroLatencias>> futuro : futuros) {
+                resultados.add(futuro.get());
+            }
+            return resultados;
+        } finally {
+            hilos.shutdownNow();
+        }
+    }
+
+    /**
+     * Bucle de un hilo de carga: elige una operación según la mezcla, la ejecuta y registra su latencia.
+     */
+    private Map<Operacion, RegistroLatencias> trabajar(long fin) {
+        Map<Operacion, RegistroLatencias> registros = new EnumMap<>(Operacion.class);
+        ThreadLocalRandom azar = ThreadLocalRandom.current();
+        while (System.nanoTime() < fin) {
+            Operacion operacion = ruleta[azar.nextInt(ruleta.length)];
+            Long devolver = null;
+            if (operacion == Operacion.DEVOLUCION) {
+                devolver = prestamosActivos.poll();
+                if (devolver == null) {
+                    operacion = Operacion.PRESTAMO;
+                }
+            }
+
+            long inicio = System.nanoTime();
+            int estado = switch (operacion) {
+                case BUSQUEDA -> enviar("GET", "/api/libros/titulo/buscar?titulo="
+                        + PALABRAS[azar.nextInt(PALABRAS.length)], null).statusCode;
+                case DISPONIBILIDAD -> enviar("GET", "/api/libros/id/" + (1 + azar.nextInt(config.libros))
+                        + "/disponible", null).statusCode;
+                case PRESTAMO -> crearPrestamo(isbn(azar.nextInt(config.libros)), cuenta(azar.nextInt(config.usuarios)));
+                case DEVOLUCION -> enviar("PUT", "/api/prestamos/" + devolver + "/devolver", null).statusCode;
+            };
+            registros.computeIfAbsent(operacion, o -> new RegistroLatencias()).registrar(System.nanoTime() - inicio, estado);
+        }
+        return registros;
+    }
+
+    private int crearPrestamo(String isbn, String cuenta) {
+        Respuesta respuesta = enviar("POST", "/api/prestamos/crear", "{\"isbn\":\"" + isbn + "\",\"numeroCuenta\":\""
+                + cuenta + "\",\"fechaPrestamo\":\"" + LocalDate.now() + "\",\"sucursal\":\"" + SUCURSAL + "\"}");
+        if (respuesta.statusCode / 100 == 2 && respuesta.cuerpo != null) {
+            try {
+                JsonNode prestamo = json.readTree(respuesta.cuerpo);
+                prestamosActivos.offer(prestamo.get("id").asLong());
+            } catch (Exception e) {
+                return -1;
+            }
+        }
+        return respuesta.statusCode;
+    }
+
+    private Respuesta enviar(String metodo, String ruta, String cuerpo) {
+        HttpRequest.Builder peticion = HttpRequest.newBuilder(URI.create(base + ruta))
+                .timeout(Duration.ofSeconds(10))
+                .header("Accept", "application/json");
+        if (cuerpo != null) {
+            peticion.header("Content-Type", "application/json")
+                    .method(metodo, HttpRequest.BodyPublishers.ofString(cuerpo));
+        } else {
+            peticion.method(metodo, HttpRequest.BodyPublishers.noBody());
+        }
+        try {
+            HttpResponse<String> respuesta = http.send(peticion.build(), HttpResponse.BodyHandlers.ofString());
+            return new Respuesta(respuesta.statusCode(), respuesta.body());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new Respuesta(-1, null);
+        } catch (Exception e) {
+            return new Respuesta(-1, null);
+        }
+    }
+
+    private static Map<Operacion, RegistroLatencias> combinar(List<Map<Operacion, RegistroLatencias>> porHilo) {
+        Map<Operacion, RegistroLatencias> total = new EnumMap<>(Operacion.class);
+        for (Map<Operacion, RegistroLatencias> registros : porHilo) {
+            registros.forEach((operacion, registro) ->
+                    total.computeIfAbsent(operacion, o -> new RegistroLatencias()).combinar(registro));
+        }
+        return total;
+    }
+
+    private boolean informar(Map<Operacion, RegistroLatencias> registros, double segundos) {
+        System.out.println();
+        System.out.printf("%-15s %10s %10s %9s %9s %9s %9s %10s %8s %8s%n",
+                "operacion", "peticiones", "ops/s", "p50 µs", "p90 µs", "p99 µs", "p99.9 µs", "max µs", "4xx", "errores");
+        RegistroLatencias global = new RegistroLatencias();
+        for (Map.Entry<Operacion, RegistroLatencias> entrada : registros.entrySet()) {
+            imprimirFila(entrada.getKey().name().toLowerCase(), entrada.getValue(), segundos);
+            global.combinar(entrada.getValue());
+        }
+        imprimirFila("total", global, segundos);
+
+        double tasaError = global.getTotal() == 0 ? 0 : (double) global.getErrores() / global.getTotal();
+        System.out.printf("%nTasa de errores: %.4f%% (máximo permitido %.4f%%)%n",
+                tasaError * 100, config.tasaErrorMaxima * 100);
+        return tasaError > config.tasaErrorMaxima;
+    }
+
+    private static void imprimirFila(String nombre, RegistroLatencias registro, double segundos) {
+        registro.ordenar();
+        System.out.printf("%-15s %10d %10.1f %9d %9d %9d %9d %10d %8d %8d%n",
+                nombre, registro.getTotal(), registro.getTotal() / segundos,
+                registro.percentilMicros(50), registro.percentilMicros(90), registro.percentilMicros(99),
+                registro.percentilMicros(99.9), registro.percentilMicros(100),
+                registro.getRechazos(), registro.getErrores());
+    }
+
+    private static String cuenta(int i) {
+        return String.format("C%09d", i);
+    }
+
+    private static String isbn(int i) {
+        return String.format("978%010d", i);
+    }
+
+    private static String titulo(int i) {
+        return "El " + PALABRAS[i % PALABRAS.length] + " y la " + PALABRAS[(i / PALABRAS.length) % PALABRAS.length]
+                + " " + i;
+    }
+
+    private record Respuesta(int statusCode, String cuerpo) { }
+}
@@ -0,0 +1,15 @@
+package com.biblios.biblionet.carga;
+
+/**
+ * Tipos de operación que el generador de carga ejecuta contra la API.
+ */
+enum Operacion {
+    /** Búsqueda de libros por fragmento del título. */
+    BUSQUEDA,
+    /** Consulta de disponibilidad de un libro por ID. */
+    DISPONIBILIDAD,
+    /** Creación de un préstamo (checkout). */
+    PRESTAMO,
+    /** Devolución de un préstamo activo. */
+    DEVOLUCION
+}
@@ -0,0 +1,81 @@
+package com.biblios.biblionet.carga;
+
+import java.util.Arrays;
+
+/**
+ * Registro de latencias y resultados de una operación. Cada hilo de carga usa su propio registro
+ * (sin sincronización) y al final se combinan todos para calcular percentiles exactos.
+ */
+final class RegistroLatencias {
+
+    private long[] latenciasNanos = new long[1024];
+    private int total;
+    private long errores;
+    private long rechazos;
+
+    /**
+     * Registra una petición completada.
+     *
+     * @param nanos  Latencia de la petición
+     * @param estado Código HTTP de la respuesta, o -1 si falló la conexión
+     */
+    void registrar(long nanos, int estado) {
+        if (total == latenciasNanos.length) {
+            latenciasNanos = Arrays.copyOf(latenciasNanos, total * 2);
+        }
+        latenciasNanos[total++] = nanos;
+        if (estado < 0 || estado >= 500) {
+            errores++;
+        } else if (estado >= 400) {
+            rechazos++;
+        }
+    }
+
+    /**
+     * Añade a este registro todas las muestras de otro.
+     *
+     * @param otro Registro a combinar
+     */
+    void combinar(RegistroLatencias otro) {
+        if (total + otro.total > latenciasNanos.length) {
+            latenciasNanos = Arrays.copyOf(latenciasNanos, total + otro.total);
+        }
+        System.arraycopy(otro.latenciasNanos, 0, latenciasNanos, total, otro.total);
+        total += otro.total;
+        errores += otro.errores;
+        rechazos += otro.rechazos;
+    }
+
+    int getTotal() {
+        return total;
+    }
+
+    long getErrores() {
+        return errores;
+    }
+
+    long getRechazos() {
+        return rechazos;
+    }
+
+    /**
+     * Ordena las muestras; debe llamarse antes de {@link #percentilMicros(double)}.
+     */
+    void ordenar() {
+        Arrays.sort(latenciasNanos, 0, total);
+    }
+
+    /**
+     * Devuelve el percentil indicado en microsegundos (las muestras deben estar ordenadas).
+     *
+     * @param percentil Valor entre 0 y 100
+     * @return Latencia del percentil en microsegundos, o 0 si no hay muestras
+     */
+    long percentilMicros(double percentil) {
+        if (total == 0) {
+            return 0;
+        }
+        int indice = (int) Math.ceil(percentil / 100.0 * total) - 1;
+        return latenciasNanos[Math.max(0, Math.min(indice, total - 1))] / 1_000;
+    }
+}
@@ -0,0 +1,61 @@
+package com.biblios.biblionet.benchmark;
+
+import com.biblios.biblionet.model.Prestamo;
+import com.biblios.biblionet.repository.PrestamoRepository;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compara el coste de listar préstamos en una transacción de lectura-escritura (contexto de persistencia
+ * completo: instantáneas para dirty checking y flush al confirmar, como ocurría con open-session-in-view)
+ * frente a una transacción de solo lectura (sesión de solo lectura, sin instantáneas ni flush).
+ * <p>
+ * Se ejecuta con {@code ./gradlew jmh}; el perfilador "gc" informa de la tasa de asignación por operación
+ * ({@code gc.alloc.rate.norm}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConsultasSoloLecturaBenchmark {
+
+    @Param({ "1000", "10000" })
+    private int prestamos;
+
+    private ConfigurableApplicationContext contexto;
+    private PrestamoRepository prestamoRepo;
+    private TransactionTemplate lecturaEscritura;
+    private TransactionTemplate soloLectura;
+
+    @Setup(Level.Trial)
+    public void arrancar() {
+        contexto = ContextoBenchmark.arrancar(prestamos);
+        prestamoRepo = contexto.getBean(PrestamoRepository.class);
+        PlatformTransactionManager transacciones = contexto.getBean(PlatformTransactionManager.class);
+        lecturaEscritura = new TransactionTemplate(transacciones);
+        soloLectura = new TransactionTemplate(transacciones);
+        soloLectura.setReadOnly(true);
+    }
+
+    @TearDown(Level.Trial)
+    public void detener() {
+        contexto.close();
+    }
+
+    @Benchmark
+    public List<Prestamo> contextoCompleto() {
+        return lecturaEscritura.execute(status -> prestamoRepo.findByFechaDevolucionIsNull());
+    }
+
+    @Benchmark
+    public List<Prestamo> soloLectura() {
+        return soloLectura.execute(status -> prestamoRepo.findByFechaDevolucionIsNull());
+    }
+}
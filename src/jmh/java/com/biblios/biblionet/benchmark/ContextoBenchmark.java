@@ -0,0 +1,74 @@
+package com.biblios.biblionet.benchmark;
+
+import com.biblios.biblionet.BiblionetApplication;
+import com.biblios.biblionet.model.Libro;
+import com.biblios.biblionet.model.Prestamo;
+import com.biblios.biblionet.model.Usuario;
+import com.biblios.biblionet.repository.LibroRepository;
+import com.biblios.biblionet.repository.PrestamoRepository;
+import com.biblios.biblionet.repository.UsuarioRepository;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Arranque compartido por los benchmarks: levanta el contexto de Spring sin servidor web,
+ * con una base H2 en memoria, y siembra libros, usuarios y préstamos activos.
+ */
+final class ContextoBenchmark {
+
+    private ContextoBenchmark() {
+    }
+
+    /**
+     * Arranca la aplicación y siembra el número de préstamos activos indicado.
+     *
+     * @param prestamos Número de préstamos activos a crear
+     * @return Contexto de la aplicación
+     */
+    static ConfigurableApplicationContext arrancar(int prestamos) {
+        SpringApplication aplicacion = new SpringApplication(BiblionetApplication.class);
+        aplicacion.setWebApplicationType(WebApplicationType.NONE);
+        // Como argumentos de línea de comandos, para que prevalezcan sobre application.properties.
+        ConfigurableApplicationContext contexto = aplicacion.run(
+                "--spring.datasource.url=jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1",
+                "--spring.jpa.hibernate.ddl-auto=create-drop",
+                "--spring.jpa.show-sql=false",
+                "--logging.level.root=WARN",
+                "--logging.level.org.hibernate.SQL=WARN",
+                "--biblionet.archivo.cron=-");
+        sembrar(contexto, prestamos);
+        return contexto;
+    }
+
+    private static void sembrar(ConfigurableApplicationContext contexto, int prestamos) {
+        LibroRepository libroRepo = contexto.getBean(LibroRepository.class);
+        UsuarioRepository usuarioRepo = contexto.getBean(UsuarioRepository.class);
+        PrestamoRepository prestamoRepo = contexto.getBean(PrestamoRepository.class);
+        contexto.getBean(TransactionTemplate.class).executeWithoutResult(status -> {
+            List<Usuario> usuarios = new ArrayList<>();
+            for (int i = 0; i < 500; i++) {
+                usuarios.add(new Usuario("Usuario " + i, String.format("B%09d", i)));
+            }
+            usuarios = usuarioRepo.saveAll(usuarios);
+
+            List<Libro> libros = new ArrayList<>();
+            for (int i = 0; i < prestamos; i++) {
+                libros.add(new Libro("Libro de prueba " + i, "Autor " + (i % 97), String.format("979%010d", i),
+                        LocalDate.of(2000, 1, 1).plusDays(i % 5000), "Novela"));
+            }
+            libros = libroRepo.saveAll(libros);
+
+            List<Prestamo> activos = new ArrayList<>();
+            for (int i = 0; i < prestamos; i++) {
+                activos.add(new Prestamo(libros.get(i), usuarios.get(i % usuarios.size()), LocalDate.now(), null));
+            }
+            prestamoRepo.saveAll(activos);
+        });
+    }
+}
@@ -0,0 +1,69 @@
+package com.biblios.biblionet.benchmark;
+
+import com.biblios.biblionet.repository.PrestamoRepository;
+import com.biblios.biblionet.service.ListadoPrestamosJsonService;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compara dos formas de producir el JSON del listado de préstamos pendientes: cargar las entidades en una
+ * transacción de solo lectura y serializar la {@code List<Prestamo>} con Jackson (el comportamiento anterior
+ * de los endpoints de listado), frente a {@link ListadoPrestamosJsonService}, que escribe cada fila de la
+ * consulta JDBC directamente en el flujo de salida.
+ * <p>
+ * La salida se descarta para medir solo la consulta y la serialización. Se ejecuta con {@code ./gradlew jmh};
+ * el perfilador "gc" informa de la tasa de asignación por operación ({@code gc.alloc.rate.norm}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ListadoPrestamosJsonBenchmark {
+
+    @Param({ "1000", "10000" })
+    private int prestamos;
+
+    private ConfigurableApplicationContext contexto;
+    private PrestamoRepository prestamoRepo;
+    private ListadoPrestamosJsonService listados;
+    private ObjectWriter jackson;
+    private TransactionTemplate soloLectura;
+    private final OutputStream salida = OutputStream.nullOutputStream();
+
+    @Setup(Level.Trial)
+    public void arrancar() {
+        contexto = ContextoBenchmark.arrancar(prestamos);
+        prestamoRepo = contexto.getBean(PrestamoRepository.class);
+        listados = contexto.getBean(ListadoPrestamosJsonService.class);
+        // Como el conversor de Spring MVC, sin cerrar el flujo de salida al terminar.
+        jackson = contexto.getBean(ObjectMapper.class).writer().without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        soloLectura = new TransactionTemplate(contexto.getBean(PlatformTransactionManager.class));
+        soloLectura.setReadOnly(true);
+    }
+
+    @TearDown(Level.Trial)
+    public void detener() {
+        contexto.close();
+    }
+
+    @Benchmark
+    public void entidadesConJackson() throws IOException {
+        jackson.writeValue(salida, soloLectura.execute(status -> prestamoRepo.findByFechaDevolucionIsNull()));
+    }
+
+    @Benchmark
+    public void filasDirectas() throws IOException {
+        listados.escribirPendientes(salida);
+    }
+}
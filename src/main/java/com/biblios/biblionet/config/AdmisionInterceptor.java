@@ -0,0 +1,125 @@
+package com.biblios.biblionet.config;
+
+import com.biblios.biblionet.service.AdmisionService;
+import com.biblios.biblionet.service.AdmisionService.ClaseCoste;
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Interceptor que aplica el control de admisión de {@link AdmisionService} a todas las peticiones de la API.
+ * <p>
+ * El cliente se identifica por la cabecera {@code X-Api-Key}, que solo se acepta si es una de las claves
+ * registradas en {@code biblionet.admision.claves} (una clave desconocida recibe 401, para que no se pueda
+ * obtener un cubo nuevo cambiando de clave en cada petición), o, si no la envía, por su dirección. Detrás
+ * del balanceador, la dirección es la del cliente original siempre que {@code server.forward-headers-strategy}
+ * esté activado y el balanceador figure entre los proxies internos de confianza.
+ * <p>
+ * Las escrituras son operaciones; las lecturas que coinciden con las rutas configuradas en
+ * {@code biblionet.admision.rutas-listado} son listados, y el resto, consultas. Las búsquedas por fragmento
+ * de título o nombre no son listados, porque la interfaz las lanza con cada pulsación. Las peticiones
+ * no admitidas reciben 429 con la cabecera {@code Retry-After} en segundos.
+ */
+@Component
+public class AdmisionInterceptor implements AsyncHandlerInterceptor {
+
+    private static final String CABECERA_CLIENTE = "X-Api-Key";
+    private static final String RUTAS_LISTADO = "/api/prestamos,/api/prestamos/pendientes,/api/prestamos/por-libro/**,"
+            + "/api/prestamos/por-usuario/**,/api/libros,/api/libros/disponibles,/api/usuarios,/api/reportes/**";
+    private static final String ATRIBUTO_CLASE = AdmisionInterceptor.class.getName() + ".clase";
+
+    private final AdmisionService admision;
+    private final List<String> rutasListado;
+    private final Set<String> claves;
+    private final AntPathMatcher comparador = new AntPathMatcher();
+
+    /**
+     * Constructor con inyección de dependencias.
+     *
+     * @param admision     Servicio de control de admisión
+     * @param rutasListado Patrones de las rutas GET que se tratan como listados
+     * @param claves       Claves de API registradas; las demás se rechazan
+     */
+    public AdmisionInterceptor(AdmisionService admision,
+                               @Value("${biblionet.admision.rutas-listado:" + RUTAS_LISTADO + "}") List<String> rutasListado,
+                               @Value("${biblionet.admision.claves:}") List<String> claves) {
+        this.admision = admision;
+        this.rutasListado = rutasListado;
+        this.claves = new HashSet<>();
+        for (String clave : claves) {
+            if (!clave.isBlank()) {
+                this.claves.add(clave.trim());
+            }
+        }
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler)
+            throws IOException {
+        if (request.getDispatcherType() != DispatcherType.REQUEST) {
+            // Las peticiones asíncronas vuelven a pasar por aquí al completarse; ya se contaron.
+            return true;
+        }
+        String clave = request.getHeader(CABECERA_CLIENTE);
+        boolean conClave = clave != null && !clave.isBlank();
+        if (conClave && !claves.contains(clave)) {
+            escribirError(response, HttpStatus.UNAUTHORIZED, "{\"error\":\"Clave de API desconocida\"}");
+            return false;
+        }
+        ClaseCoste clase = clasificar(request);
+        long espera = admision.admitir(conClave ? clave : request.getRemoteAddr(), clase);
+        if (espera == 0) {
+            request.setAttribute(ATRIBUTO_CLASE, clase);
+            return true;
+        }
+        long segundos = Math.max(1, (espera + 999_999_999L) / 1_000_000_000L);
+        response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(segundos));
+        escribirError(response, HttpStatus.TOO_MANY_REQUESTS, "{\"error\":\"Demasiadas peticiones\",\"clase\":\""
+                + clase + "\",\"reintentarEnSegundos\":" + segundos + "}");
+        return false;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                Exception ex) {
+        Object clase = request.getAttribute(ATRIBUTO_CLASE);
+        if (clase != null) {
+            request.removeAttribute(ATRIBUTO_CLASE);
+            admision.finalizar((ClaseCoste) clase);
+        }
+    }
+
+    private ClaseCoste clasificar(HttpServletRequest request) {
+        if (!"GET".equals(request.getMethod())) {
+            return ClaseCoste.OPERACION;
+        }
+        String ruta = request.getRequestURI().substring(request.getContextPath().length());
+        for (String patron : rutasListado) {
+            if (comparador.match(patron, ruta)) {
+                return ClaseCoste.LISTADO;
+            }
+        }
+        return ClaseCoste.CONSULTA;
+    }
+
+    private static void escribirError(HttpServletResponse response, HttpStatus estado, String cuerpo)
+            throws IOException {
+        response.setStatus(estado.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.getWriter().write(cuerpo);
+    }
+}
@@ -0,0 +1,30 @@
+package com.biblios.biblionet.config;
+
+import com.biblios.biblionet.service.ListadoPrestamosJsonService;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Configuración de Spring MVC para los listados de préstamos escritos de forma asíncrona:
+ * registra el interceptor que libera el hueco de cada listado al completarse la petición.
+ */
+@Configuration
+public class ListadosConfig implements WebMvcConfigurer {
+
+    private final ListadoPrestamosJsonService listados;
+
+    /**
+     * Constructor con inyección de dependencias.
+     *
+     * @param listados Servicio de listados de préstamos en JSON
+     */
+    public ListadosConfig(ListadoPrestamosJsonService listados) {
+        this.listados = listados;
+    }
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.registerCallableInterceptors(listados.liberadorAsincrono());
+    }
+}
@@ -0,0 +1,31 @@
+package com.biblios.biblionet.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Configuración de Spring MVC: registra el control de admisión sobre la API.
+ * Se activa con {@code biblionet.admision.habilitada=true}.
+ */
+@Configuration
+@ConditionalOnProperty(name = "biblionet.admision.habilitada", havingValue = "true")
+public class WebConfig implements WebMvcConfigurer {
+
+    private final AdmisionInterceptor admision;
+
+    /**
+     * Constructor con inyección de dependencias.
+     *
+     * @param admision Interceptor de control de admisión
+     */
+    public WebConfig(AdmisionInterceptor admision) {
+        this.admision = admision;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(admision).addPathPatterns("/api/**");
+    }
+}
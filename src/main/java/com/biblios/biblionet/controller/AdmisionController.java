@@ -0,0 +1,38 @@
+package com.biblios.biblionet.controller;
+
+import com.biblios.biblionet.service.AdmisionService;
+
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+/**
+ * Controlador REST con las métricas del control de admisión.
+ * Expone endpoints bajo la ruta /api/admision.
+ */
+@RestController
+@RequestMapping("/api/admision")
+@CrossOrigin(origins = "*")
+public class AdmisionController {
+
+    private final AdmisionService admision;
+
+    /**
+     * Constructor con inyección de dependencias.
+     *
+     * @param admision Servicio de control de admisión
+     */
+    public AdmisionController(AdmisionService admision) {
+        this.admision = admision;
+    }
+
+    /**
+     * Devuelve las peticiones admitidas y rechazadas por clase de coste desde el arranque.
+     *
+     * @return Estadísticas por clase de coste
+     */
+    @GetMapping("/estadisticas")
+    public Map<AdmisionService.ClaseCoste, AdmisionService.EstadisticasDto> estadisticas() {
+        return admision.estadisticas();
+    }
+}
@@ -0,0 +1,53 @@
+package com.biblios.biblionet.controller;
+
+import com.biblios.biblionet.service.AutocompletadoService;
+
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+/**
+ * Controlador REST para el autocompletado de búsquedas.
+ * Expone endpoints bajo la ruta /api/autocompletar.
+ */
+@RestController
+@RequestMapping("/api/autocompletar")
+@CrossOrigin(origins = "*")
+public class AutocompletadoController {
+
+    private static final int MAX_SUGERENCIAS = 50;
+
+    private final AutocompletadoService autocompletado;
+
+    /**
+     * Constructor con inyección de dependencias.
+     *
+     * @param autocompletado Servicio de autocompletado
+     */
+    public AutocompletadoController(AutocompletadoService autocompletado) {
+        this.autocompletado = autocompletado;
+    }
+
+    /**
+     * Devuelve las mejores sugerencias (títulos, autores, ISBN y números de cuenta) para el texto escrito.
+     *
+     * @param q Texto escrito por el usuario
+     * @param k Número máximo de sugerencias (hasta 50)
+     * @return Lista de sugerencias ordenadas por relevancia
+     */
+    @GetMapping
+    public List<AutocompletadoService.Sugerencia> sugerir(@RequestParam("q") String q,
+                                                          @RequestParam(value = "k", defaultValue = "10") int k) {
+        return autocompletado.sugerir(q, Math.min(k, MAX_SUGERENCIAS));
+    }
+
+    /**
+     * Devuelve las métricas de tamaño y memoria del índice de autocompletado.
+     *
+     * @return Estadísticas del índice
+     */
+    @GetMapping("/estadisticas")
+    public AutocompletadoService.EstadisticasDto estadisticas() {
+        return autocompletado.estadisticas();
+    }
+}
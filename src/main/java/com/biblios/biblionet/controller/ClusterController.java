@@ -0,0 +1,39 @@
+package com.biblios.biblionet.controller;
+
+import com.biblios.biblionet.service.ClusterService;
+
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+/**
+ * Controlador REST con el estado de la coordinación entre nodos.
+ * Expone endpoints bajo la ruta /api/cluster.
+ */
+@RestController
+@RequestMapping("/api/cluster")
+@CrossOrigin(origins = "*")
+public class ClusterController {
+
+    private final ClusterService cluster;
+
+    /**
+     * Constructor con inyección de dependencias.
+     *
+     * @param cluster Servicio de coordinación entre nodos
+     */
+    public ClusterController(ClusterService cluster) {
+        this.cluster = cluster;
+    }
+
+    /**
+     * Devuelve el estado del cluster visto desde este nodo: mensajes enviados, recibidos y perdidos,
+     * tiempo desde el último contacto con cada nodo y si las cachés se consideran coherentes.
+     *
+     * @return Estadísticas del cluster
+     */
+    @GetMapping("/estadisticas")
+    public Map<String, Object> estadisticas() {
+        return cluster.estadisticas();
+    }
+}
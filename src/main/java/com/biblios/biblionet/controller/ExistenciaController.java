@@ -0,0 +1,160 @@
+package com.biblios.biblionet.controller;
+
+import com.biblios.biblionet.model.Existencia;
+import com.biblios.biblionet.model.Libro;
+import com.biblios.biblionet.repository.LibroRepository;
+import com.biblios.biblionet.service.InventarioService;
+import jakarta.persistence.EntityNotFoundException;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+/**
+ * Controlador REST para gestionar los ejemplares de cada libro por sucursal.
+ * Expone endpoints bajo la ruta /api/existencias.
+ */
+@RestController
+@RequestMapping("/api/existencias")
+@CrossOrigin(origins = "*")
+public class ExistenciaController {
+
+    private final InventarioService inventario;
+    private final LibroRepository libroRepo;
+
+    /**
+     * Constructor con inyección de dependencias.
+     *
+     * @param inventario Servicio de inventario
+     * @param libroRepo  Repositorio de libros
+     */
+    public ExistenciaController(InventarioService inventario, LibroRepository libroRepo) {
+        this.inventario = inventario;
+        this.libroRepo = libroRepo;
+    }
+
+    /**
+     * Añade (o retira, con cantidad negativa) ejemplares de un libro en una sucursal.
+     *
+     * @param dto DTO con el ISBN del libro, la sucursal y la cantidad de ejemplares
+     * @return Existencias actualizadas del libro en la sucursal
+     */
+    @PostMapping("/crear")
+    public Existencia registrarEjemplares(@RequestBody ExistenciaDto dto) {
+        Libro libro = libroRepo.findByIsbn(dto.getIsbn())
+                .orElseThrow(() -> new EntityNotFoundException("Libro no encontrado con ISBN " + dto.getIsbn()));
+        return inventario.registrarEjemplares(libro, dto.getSucursal(), dto.getCantidad());
+    }
+
+    /**
+     * Devuelve las existencias de un libro en todas las sucursales.
+     *
+     * @param libroId ID del libro
+     * @return Lista de existencias por sucursal
+     */
+    @GetMapping("/libro/{libroId}")
+    public List<Existencia> listarPorLibro(@PathVariable Long libroId) {
+        return inventario.buscarPorLibro(libroId);
+    }
+
+    /**
+     * Devuelve las existencias de un libro en una sucursal.
+     *
+     * @param libroId  ID del libro
+     * @param sucursal Código de la sucursal
+     * @return Existencias del libro en la sucursal, o 404 si la sucursal no tiene ejemplares
+     */
+    @GetMapping("/libro/{libroId}/sucursal/{sucursal}")
+    public ResponseEntity<Existencia> obtener(@PathVariable Long libroId, @PathVariable String sucursal) {
+        return inventario.buscar(libroId, sucursal)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Verifica si queda al menos un ejemplar disponible del libro en la sucursal.
+     *
+     * @param libroId  ID del libro
+     * @param sucursal Código de la sucursal
+     * @return true si hay algún ejemplar disponible
+     */
+    @GetMapping("/libro/{libroId}/sucursal/{sucursal}/disponible")
+    public boolean isDisponible(@PathVariable Long libroId, @PathVariable String sucursal) {
+        return inventario.buscar(libroId, sucursal)
+                .map(e -> e.getDisponibles() > 0)
+                .orElse(false);
+    }
+
+    /**
+     * Devuelve cuántos ejemplares del libro están prestados en todas las sucursales.
+     *
+     * @param libroId ID del libro
+     * @return Número de ejemplares prestados
+     */
+    @GetMapping("/libro/{libroId}/prestados")
+    public long contarPrestados(@PathVariable Long libroId) {
+        return inventario.contarPrestados(libroId);
+    }
+
+    /**
+     * DTO utilizado para registrar ejemplares de un libro en una sucursal.
+     */
+    public static class ExistenciaDto {
+        private String isbn;
+        private String sucursal;
+        private int cantidad;
+
+        /**
+         * Constructor vacío necesario para deserialización.
+         */
+        public ExistenciaDto() { }
+
+        /**
+         * Obtiene el ISBN del libro.
+         * @return ISBN del libro
+         */
+        public String getIsbn() {
+            return isbn;
+        }
+
+        /**
+         * Establece el ISBN del libro.
+         * @param isbn ISBN del libro
+         */
+        public void setIsbn(String isbn) {
+            this.isbn = isbn;
+        }
+
+        /**
+         * Obtiene el código de la sucursal.
+         * @return Código de la sucursal
+         */
+        public String getSucursal() {
+            return sucursal;
+        }
+
+        /**
+         * Establece el código de la sucursal.
+         * @param sucursal Código de la sucursal
+         */
+        public void setSucursal(String sucursal) {
+            this.sucursal = sucursal;
+        }
+
+        /**
+         * Obtiene la cantidad de ejemplares a añadir (o retirar, si es negativa).
+         * @return Cantidad de ejemplares
+         */
+        public int getCantidad() {
+            return cantidad;
+        }
+
+        /**
+         * Establece la cantidad de ejemplares a añadir (o retirar, si es negativa).
+         * @param cantidad Cantidad de ejemplares
+         */
+        public void setCantidad(int cantidad) {
+            this.cantidad = cantidad;
+        }
+    }
+}
@@ -2,11 +2,24 @@ package com.biblios.biblionet.controller;
 
 import com.biblios.biblionet.model.Libro;
 import com.biblios.biblionet.repository.LibroRepository;
-import com.biblios.biblionet.repository.PrestamoRepository;
+import com.biblios.biblionet.service.AutocompletadoService;
+import com.biblios.biblionet.service.CatalogoSnapshot;
+import com.biblios.biblionet.service.CatalogoSnapshotService;
+import com.biblios.biblionet.service.ClusterService;
+import com.biblios.biblionet.service.CoalescedorConsultas;
+import com.biblios.biblionet.service.ConsultaLibrosService;
+import com.biblios.biblionet.service.InventarioService;
+import com.biblios.biblionet.service.RecomendacionesService;
 
 import org.springframework.web.bind.annotation.*;
 
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 /**
  * Controlador REST para gestionar las operaciones relacionadas con los libros.
@@ -18,38 +31,64 @@ import java.util.List;
 public class LibroController {
 
     private final LibroRepository libroRepo;
-    private final PrestamoRepository prestamoRepo;
+    private final AutocompletadoService autocompletado;
+    private final ConsultaLibrosService consultas;
+    private final CatalogoSnapshotService catalogo;
+    private final RecomendacionesService recomendaciones;
+    private final ClusterService cluster;
+    private final InventarioService inventario;
 
     /**
-     * Constructor con inyección de dependencias para los repositorios de libro y préstamo.
+     * Constructor con inyección de dependencias para el repositorio y los servicios de libros.
      *
      * @param libroRepo      Repositorio de libros
-     * @param prestamoRepo   Repositorio de préstamos
+     * @param autocompletado Servicio de autocompletado, actualizado al crear libros
+     * @param consultas      Servicio de consultas puntuales con agrupación de peticiones concurrentes
+     * @param catalogo       Copia fuera del heap del catálogo para las lecturas
+     * @param recomendaciones Servicio de recomendaciones "también prestados"
+     * @param cluster        Coordinación con los demás nodos, avisados de cada libro creado
+     * @param inventario     Servicio de existencias, que registra el primer ejemplar de cada libro creado
      */
-    public LibroController(LibroRepository libroRepo, PrestamoRepository prestamoRepo) {
+    public LibroController(LibroRepository libroRepo,
+                           AutocompletadoService autocompletado, ConsultaLibrosService consultas,
+                           CatalogoSnapshotService catalogo, RecomendacionesService recomendaciones,
+                           ClusterService cluster, InventarioService inventario) {
         this.libroRepo = libroRepo;
-        this.prestamoRepo = prestamoRepo;
+        this.autocompletado = autocompletado;
+        this.consultas = consultas;
+        this.catalogo = catalogo;
+        this.recomendaciones = recomendaciones;
+        this.cluster = cluster;
+        this.inventario = inventario;
     }
 
     /**
      * Obtiene la lista de todos los libros registrados en el sistema.
+     * Se sirve desde la copia del catálogo cuando está vigente.
      *
      * @return Lista de objetos {@link Libro}
      */
     @GetMapping
     public List<Libro> obtenerTodosLosLibros() {
-        return libroRepo.findAll();
+        CatalogoSnapshot snapshot = catalogo.vigente();
+        return snapshot != null ? snapshot.todos() : libroRepo.findAll();
     }
 
     /**
-     * Crea un nuevo libro a partir del objeto recibido en el cuerpo de la petición.
+     * Crea un nuevo libro a partir del objeto recibido en el cuerpo de la petición,
+     * con un ejemplar disponible en la sucursal por defecto.
      *
      * @param libro Objeto {@link Libro} a crear
      * @return Libro creado y guardado en la base de datos
      */
     @PostMapping("/crear")
     public Libro crearLibro(@RequestBody Libro libro){
-        return libroRepo.save(libro);
+        Libro guardado = libroRepo.save(libro);
+        inventario.registrarEjemplarInicial(guardado);
+        catalogo.invalidar();
+        autocompletado.agregarLibro(guardado);
+        cluster.publicar(ClusterService.Cambio.libro(guardado.getId()));
+        return guardado;
     }
 
     /**
@@ -60,7 +99,11 @@ public class LibroController {
      */
     @GetMapping("/id/{id}")
     public Libro obtenerLibroPorId(@PathVariable Long id){
-        return libroRepo.findById(id).orElse(null);
+        CatalogoSnapshot snapshot = catalogo.vigente();
+        if (snapshot != null) {
+            return snapshot.porId(id).orElse(null);
+        }
+        return consultas.buscarPorId(id).orElse(null);
     }
 
     /**
@@ -71,7 +114,11 @@ public class LibroController {
      */
     @GetMapping("/isbn/{isbn}")
     public Libro obtenerLibroPorIsbn(@PathVariable String isbn){
-        return libroRepo.findByIsbn(isbn).orElse(null);
+        CatalogoSnapshot snapshot = catalogo.vigente();
+        if (snapshot != null) {
+            return snapshot.porIsbn(isbn).orElse(null);
+        }
+        return consultas.buscarPorIsbn(isbn).orElse(null);
     }
 
     /**
@@ -86,7 +133,7 @@ public class LibroController {
     }
 
     /**
-     * Devuelve una lista de todos los libros disponibles (no prestados actualmente).
+     * Devuelve una lista de todos los libros con algún ejemplar disponible en alguna sucursal.
      *
      * @return Lista de libros disponibles
      */
@@ -96,14 +143,78 @@ public class LibroController {
     }
 
     /**
-     * Verifica si un libro está disponible (es decir, no tiene préstamos activos).
+     * Verifica si un libro está disponible (es decir, si alguna sucursal tiene ejemplares sin prestar).
      *
      * @param id ID del libro
-     * @return true si el libro está disponible, false si está prestado
+     * @return true si el libro está disponible, false si todos sus ejemplares están prestados o no tiene ejemplares
      */
     @GetMapping("/id/{id}/disponible")
     public boolean isDisponible(@PathVariable("id") Long id){
-        boolean tienePrestamoActivo = prestamoRepo.existsByLibroIdAndFechaDevolucionIsNull(id);
-        return !tienePrestamoActivo;
+        return consultas.isDisponible(id);
+    }
+
+    /**
+     * Devuelve los libros que más se han prestado a los usuarios que también tomaron prestado el libro dado,
+     * del más al menos frecuente.
+     *
+     * @param id ID del libro
+     * @param n  Número máximo de libros a devolver (como máximo 50)
+     * @return Lista de libros relacionados
+     */
+    @GetMapping("/id/{id}/tambien-prestados")
+    public List<Libro> tambienPrestados(@PathVariable("id") Long id,
+                                        @RequestParam(value = "n", defaultValue = "10") int n) {
+        List<Long> ids = recomendaciones.tambienPrestados(id, Math.min(n, 50));
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        CatalogoSnapshot snapshot = catalogo.vigente();
+        if (snapshot != null) {
+            return ids.stream().map(snapshot::porId).flatMap(Optional::stream).toList();
+        }
+        Map<Long, Libro> porId = libroRepo.findAllById(ids).stream()
+                .collect(Collectors.toMap(Libro::getId, Function.identity()));
+        return ids.stream().map(porId::get).filter(Objects::nonNull).toList();
+    }
+
+    /**
+     * Devuelve el tamaño de la matriz de co-préstamos usada por las recomendaciones.
+     *
+     * @return Estadísticas de la matriz
+     */
+    @GetMapping("/estadisticas/recomendaciones")
+    public RecomendacionesService.EstadisticasDto estadisticasRecomendaciones() {
+        return recomendaciones.estadisticas();
+    }
+
+    /**
+     * Devuelve cuántas consultas por ID, ISBN y disponibilidad llegaron a la base de datos
+     * y cuántas se resolvieron esperando una consulta idéntica ya en curso.
+     *
+     * @return Estadísticas por tipo de búsqueda
+     */
+    @GetMapping("/estadisticas/coalescencia")
+    public Map<String, CoalescedorConsultas.Estadisticas> estadisticasCoalescencia() {
+        return consultas.estadisticas();
+    }
+
+    /**
+     * Devuelve el estado de la copia fuera del heap del catálogo: número de libros, memoria ocupada
+     * y si refleja todos los cambios conocidos.
+     *
+     * @return Estadísticas de la copia del catálogo
+     */
+    @GetMapping("/estadisticas/catalogo")
+    public Map<String, Object> estadisticasCatalogo() {
+        Map<String, Object> estadisticas = new LinkedHashMap<>();
+        CatalogoSnapshot snapshot = catalogo.ultima();
+        estadisticas.put("vigente", catalogo.vigente() != null);
+        if (snapshot != null) {
+            estadisticas.put("libros", snapshot.getLibros());
+            estadisticas.put("bytesFueraDelHeap", snapshot.getBytesFueraDelHeap());
+            estadisticas.put("bytesIndices", snapshot.getBytesIndices());
+            estadisticas.put("construidoEn", snapshot.getConstruidoEn());
+        }
+        return estadisticas;
     }
 }
\ No newline at end of file
@@ -1,17 +1,37 @@
 package com.biblios.biblionet.controller;
 
+import com.biblios.biblionet.model.EstadoReserva;
 import com.biblios.biblionet.model.Libro;
 import com.biblios.biblionet.model.Prestamo;
 import com.biblios.biblionet.model.Usuario;
 import com.biblios.biblionet.repository.LibroRepository;
 import com.biblios.biblionet.repository.PrestamoRepository;
 import com.biblios.biblionet.repository.UsuarioRepository;
+import com.biblios.biblionet.service.ArchivoPrestamosService;
+import com.biblios.biblionet.service.ClusterService;
+import com.biblios.biblionet.service.InventarioService;
+import com.biblios.biblionet.service.ListadoPrestamosJsonService;
+import com.biblios.biblionet.service.PrestamosActivosService;
+import com.biblios.biblionet.service.RecomendacionesService;
+import com.biblios.biblionet.service.ReservaService;
 import jakarta.persistence.EntityNotFoundException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Controlador REST para gestionar préstamos de libros a usuarios.
@@ -25,6 +45,13 @@ public class PrestamoController {
     private final PrestamoRepository prestamoRepo;
     private final LibroRepository libroRepo;
     private final UsuarioRepository usuarioRepo;
+    private final ArchivoPrestamosService archivoService;
+    private final InventarioService inventario;
+    private final ReservaService reservas;
+    private final RecomendacionesService recomendaciones;
+    private final PrestamosActivosService activos;
+    private final ClusterService cluster;
+    private final ListadoPrestamosJsonService listados;
 
     /**
      * Constructor que inyecta los repositorios necesarios para gestionar préstamos.
@@ -32,33 +59,54 @@ public class PrestamoController {
      * @param prestamoRepo Repositorio de préstamos
      * @param libroRepo Repositorio de libros
      * @param usuarioRepo Repositorio de usuarios
+     * @param archivoService Servicio de archivo de préstamos cerrados
+     * @param inventario Servicio de existencias por sucursal
+     * @param reservas Servicio de reservas, que recibe los ejemplares devueltos
+     * @param recomendaciones Servicio de recomendaciones, que registra cada nuevo préstamo
+     * @param activos Vista en memoria de los préstamos activos por usuario
+     * @param cluster Coordinación con los demás nodos, avisados de cada préstamo y devolución
+     * @param listados Escritura de los listados de préstamos en JSON directamente desde la consulta
      */
     public PrestamoController(PrestamoRepository prestamoRepo,
                               LibroRepository libroRepo,
-                              UsuarioRepository usuarioRepo) {
+                              UsuarioRepository usuarioRepo,
+                              ArchivoPrestamosService archivoService,
+                              InventarioService inventario,
+                              ReservaService reservas,
+                              RecomendacionesService recomendaciones,
+                              PrestamosActivosService activos,
+                              ClusterService cluster,
+                              ListadoPrestamosJsonService listados) {
         this.prestamoRepo = prestamoRepo;
         this.libroRepo = libroRepo;
         this.usuarioRepo = usuarioRepo;
+        this.archivoService = archivoService;
+        this.inventario = inventario;
+        this.reservas = reservas;
+        this.recomendaciones = recomendaciones;
+        this.activos = activos;
+        this.cluster = cluster;
+        this.listados = listados;
     }
 
     /**
      * Devuelve todos los préstamos registrados en el sistema.
      *
-     * @return Lista de préstamos
+     * @return Lista de préstamos, escrita en JSON a medida que se lee de la base de datos
      */
     @GetMapping
-    public List<Prestamo> listarTodos() {
-        return prestamoRepo.findAll();
+    public ResponseEntity<StreamingResponseBody> listarTodos() {
+        return json(listados::escribirTodos);
     }
 
     /**
      * Devuelve los préstamos pendientes (es decir, aquellos cuya fecha de devolución es nula).
      *
-     * @return Lista de préstamos no devueltos
+     * @return Lista de préstamos no devueltos, escrita en JSON a medida que se lee de la base de datos
      */
     @GetMapping("/pendientes")
-    public List<Prestamo> listarPendientes(){
-        return prestamoRepo.findByFechaDevolucionIsNull();
+    public ResponseEntity<StreamingResponseBody> listarPendientes(){
+        return json(listados::escribirPendientes);
     }
 
     /**
@@ -76,65 +124,248 @@ public class PrestamoController {
 
     /**
      * Crea un nuevo préstamo a partir de los datos proporcionados (ISBN, número de cuenta, fecha de préstamo).
+     * En la misma transacción se descuenta un ejemplar disponible de la sucursal indicada o, si no se indica,
+     * de la sucursal por defecto, para que los contadores de existencias reflejen todos los ejemplares prestados.
+     * El límite de préstamos activos por usuario se comprueba en memoria.
      *
      * @param dto DTO con los datos del préstamo
-     * @return Préstamo creado
+     * @return Préstamo creado, o 409 si el usuario alcanzó su límite de préstamos o la sucursal
+     *         no tiene ejemplares disponibles
      */
     @PostMapping("/crear")
+    @Transactional
     public ResponseEntity<Prestamo> crearPrestamo(@RequestBody PrestamoDto dto) {
+        String sucursal = dto.getSucursal() == null || dto.getSucursal().isBlank()
+                ? inventario.getSucursalPorDefecto() : dto.getSucursal();
         Libro libro = libroRepo.findByIsbn(dto.getIsbn())
                 .orElseThrow(() -> new EntityNotFoundException("Libro no encontrado con ISBN " + dto.getIsbn()));
 
         Usuario usuario = usuarioRepo.findByNumeroCuenta(dto.getNumeroCuenta())
                 .orElseThrow(() -> new EntityNotFoundException("Usuario no encontrado con número de cuenta " + dto.getNumeroCuenta()));
 
+        activos.reservarCupo(usuario.getNumeroCuenta());
+
         Prestamo prestamo = new Prestamo();
         prestamo.setLibro(libro);
         prestamo.setUsuario(usuario);
         prestamo.setFechaPrestamo(dto.getFechaPrestamo());
         prestamo.setFechaDevolucion(null); // aún no devuelto
+        prestamo.setSucursal(sucursal);
+
+        inventario.prestarEjemplar(libro.getId(), sucursal);
 
         Prestamo creado = prestamoRepo.save(prestamo);
+        recomendaciones.registrar(usuario.getId(), libro.getId());
+        activos.registrarPrestamo(usuario.getNumeroCuenta(), creado.getId(), libro.getId());
+        cluster.publicar(ClusterService.Cambio.prestamo(creado.getId(), libro.getId(), usuario.getId(),
+                usuario.getNumeroCuenta()));
         return ResponseEntity.ok(creado);
     }
 
     /**
      * Marca un préstamo como devuelto, estableciendo la fecha de devolución como la fecha actual.
+     * Si el libro tiene reservas en espera, el ejemplar se presta en la misma transacción a la reserva
+     * más antigua; si no, vuelve a los disponibles de su sucursal. Si el préstamo ya estaba cerrado
+     * se devuelve sin cambios.
      *
      * @param id ID del préstamo a actualizar
      * @return Préstamo actualizado con fecha de devolución
      */
     @PutMapping("/{id}/devolver")
+    @Transactional
     public ResponseEntity<Prestamo> devolverPrestamo(@PathVariable Long id) {
         return prestamoRepo.findById(id)
                 .map(p -> {
-                    p.setFechaDevolucion(LocalDate.now());
-                    Prestamo actualizado = prestamoRepo.save(p);
-                    return ResponseEntity.ok(actualizado);
+                    if (p.getFechaDevolucion() != null) {
+                        return ResponseEntity.ok(p);
+                    }
+                    LocalDate hoy = LocalDate.now();
+                    if (prestamoRepo.markReturned(List.of(id), hoy) == 1) {
+                        activos.registrarDevolucion(p.getUsuario().getNumeroCuenta(), id);
+                        cluster.publicar(ClusterService.Cambio.devolucion(id, p.getUsuario().getNumeroCuenta()));
+                        if (!reservas.despachar(p)) {
+                            inventario.devolverEjemplar(p.getLibro().getId(), p.getSucursal());
+                        }
+                    }
+                    p.setFechaDevolucion(hoy);
+                    return ResponseEntity.ok(p);
                 })
                 .orElse(ResponseEntity.notFound().build());
     }
 
+    /**
+     * Marca como devueltos, en una sola transacción, los préstamos indicados por ID o por ISBN del libro.
+     * Cada ISBN de la lista devuelve un ejemplar, es decir, un préstamo activo de ese libro (un ISBN repetido
+     * devuelve varios). Si el libro tiene más préstamos activos que veces aparece su ISBN, se eligen los de la
+     * sucursal indicada; si aun así no se puede decidir cuál devolver, la petición se rechaza y hay que
+     * indicar el ID del préstamo. El cierre se hace con una única sentencia UPDATE, de modo que devolver
+     * un carrito completo de libros requiere una sola petición. En la misma transacción, los ejemplares de
+     * libros con reservas en espera se prestan a esas reservas y el resto vuelve a los disponibles de su sucursal.
+     *
+     * @param dto DTO con los IDs de préstamo y/o los ISBN a devolver, y opcionalmente la sucursal
+     * @return Resumen con el número de préstamos cerrados y los que ya estaban cerrados, o 400 si no se indicó
+     *         nada o algún ISBN no identifica un único préstamo
+     */
+    @PutMapping("/devolver")
+    @Transactional
+    public ResponseEntity<ResultadoDevolucionDto> devolverLote(@RequestBody DevolucionLoteDto dto) {
+        List<Long> ids = dto.getIds() != null ? dto.getIds() : List.of();
+        List<String> isbns = dto.getIsbns() != null ? dto.getIsbns() : List.of();
+        if (ids.isEmpty() && isbns.isEmpty()) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        Set<Long> abiertos = new LinkedHashSet<>();
+        List<Long> idsYaCerrados = new ArrayList<>();
+        List<String> isbnsSinPrestamoActivo = new ArrayList<>();
+
+        if (!ids.isEmpty()) {
+            Set<Long> idsActivos = new HashSet<>(prestamoRepo.findActiveIdsByIdIn(ids));
+            for (Long id : ids) {
+                if (idsActivos.contains(id)) {
+                    abiertos.add(id);
+                } else {
+                    idsYaCerrados.add(id);
+                }
+            }
+        }
+
+        if (!isbns.isEmpty()) {
+            Map<String, Integer> ejemplaresPorIsbn = new LinkedHashMap<>();
+            for (String isbn : isbns) {
+                ejemplaresPorIsbn.merge(isbn, 1, Integer::sum);
+            }
+            Map<String, List<Long>> candidatos = new HashMap<>();
+            for (PrestamoRepository.PrestamoActivoIsbn activo
+                    : prestamoRepo.findActiveByLibroIsbnIn(ejemplaresPorIsbn.keySet())) {
+                if (!abiertos.contains(activo.getId())
+                        && (dto.getSucursal() == null || dto.getSucursal().equals(activo.getSucursal()))) {
+                    candidatos.computeIfAbsent(activo.getIsbn(), i -> new ArrayList<>()).add(activo.getId());
+                }
+            }
+            List<String> isbnsAmbiguos = new ArrayList<>();
+            for (Map.Entry<String, Integer> entrada : ejemplaresPorIsbn.entrySet()) {
+                List<Long> prestamos = candidatos.getOrDefault(entrada.getKey(), List.of());
+                if (prestamos.size() > entrada.getValue()) {
+                    isbnsAmbiguos.add(entrada.getKey());
+                    continue;
+                }
+                abiertos.addAll(prestamos);
+                for (int i = prestamos.size(); i < entrada.getValue(); i++) {
+                    isbnsSinPrestamoActivo.add(entrada.getKey());
+                }
+            }
+            if (!isbnsAmbiguos.isEmpty()) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                        "Los libros " + isbnsAmbiguos + " tienen varios préstamos activos"
+                                + (dto.getSucursal() == null ? "" : " en la sucursal " + dto.getSucursal())
+                                + "; indique el ID del préstamo" + (dto.getSucursal() == null ? " o la sucursal" : ""));
+            }
+        }
+
+        int devueltos = abiertos.isEmpty() ? 0 : prestamoRepo.markReturned(abiertos, LocalDate.now());
+        if (devueltos != abiertos.size()) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT,
+                    "Algunos préstamos fueron devueltos por otra petición simultánea; reintente la devolución");
+        }
+        if (!abiertos.isEmpty()) {
+            List<PrestamoRepository.PrestamoCuenta> cerrados = prestamoRepo.findWithAccountByIdIn(abiertos);
+            activos.registrarDevoluciones(cerrados);
+            for (PrestamoRepository.PrestamoCuenta cerrado : cerrados) {
+                cluster.publicar(ClusterService.Cambio.devolucion(cerrado.getPrestamoId(), cerrado.getNumeroCuenta()));
+            }
+        }
+
+        Set<Long> liberados = new HashSet<>(abiertos);
+        if (!abiertos.isEmpty()) {
+            for (Prestamo reservado : prestamoRepo.findWithReservationsByIdIn(abiertos, EstadoReserva.EN_ESPERA)) {
+                if (reservas.despachar(reservado)) {
+                    liberados.remove(reservado.getId());
+                }
+            }
+        }
+        inventario.devolverEjemplares(liberados);
+        return ResponseEntity.ok(new ResultadoDevolucionDto(devueltos, idsYaCerrados, isbnsSinPrestamoActivo));
+    }
+
     /**
      * Devuelve todos los préstamos activos (sin devolver) de un usuario, usando su número de cuenta.
      *
      * @param numeroCuenta Número de cuenta del usuario
-     * @return Lista de préstamos activos del usuario
+     * @return Lista de préstamos activos del usuario, escrita en JSON a medida que se lee de la base de datos
      */
     @GetMapping("/por-cuenta")
-    public List<Prestamo> buscarActivosPorCuenta(@RequestParam("numeroCuenta") String numeroCuenta) {
-        return prestamoRepo.findByUsuarioNumeroCuentaAndFechaDevolucionIsNull(numeroCuenta);
+    public ResponseEntity<StreamingResponseBody> buscarActivosPorCuenta(
+            @RequestParam("numeroCuenta") String numeroCuenta) {
+        return json(salida -> listados.escribirActivosPorCuenta(numeroCuenta, salida));
+    }
+
+    /**
+     * Devuelve los IDs de los préstamos activos de un usuario y de sus libros, leídos de la vista en memoria
+     * sin consultar la base de datos.
+     *
+     * @param numeroCuenta Número de cuenta del usuario
+     * @return Préstamos activos del usuario y su límite de préstamos
+     */
+    @GetMapping("/por-cuenta/activos")
+    public PrestamosActivosService.ActivosDto resumenActivosPorCuenta(
+            @RequestParam("numeroCuenta") String numeroCuenta) {
+        return activos.activos(numeroCuenta);
+    }
+
+    /**
+     * Devuelve el tamaño de la vista en memoria de préstamos activos y el resultado de su reconciliación
+     * con la tabla de préstamos.
+     *
+     * @return Estadísticas de la vista de préstamos activos
+     */
+    @GetMapping("/estadisticas/activos")
+    public PrestamosActivosService.EstadisticasDto estadisticasActivos() {
+        return activos.estadisticas();
     }
 
     /**
      * Devuelve todos los préstamos (activos o cerrados) de un libro por su ID.
+     * Con {@code historial=true} se incluyen también los préstamos archivados.
      *
      * @param libroId ID del libro
-     * @return Lista de préstamos relacionados con el libro
+     * @param historial true para incluir los préstamos archivados
+     * @return Lista de préstamos relacionados con el libro, escrita en JSON a medida que se lee de la base de datos
      */
     @GetMapping("/por-libro/{libroId}")
-    public List<Prestamo> buscarPorLibro(@PathVariable Long libroId) {
-        return prestamoRepo.findByLibroId(libroId);
+    public ResponseEntity<StreamingResponseBody> buscarPorLibro(
+            @PathVariable Long libroId,
+            @RequestParam(value = "historial", defaultValue = "false") boolean historial) {
+        return json(salida -> listados.escribirPorLibro(libroId, historial, salida));
+    }
+
+    /**
+     * Devuelve todos los préstamos (activos o cerrados) de un usuario por su ID.
+     * Con {@code historial=true} se incluyen también los préstamos archivados.
+     *
+     * @param usuarioId ID del usuario
+     * @param historial true para incluir los préstamos archivados
+     * @return Lista de préstamos del usuario, escrita en JSON a medida que se lee de la base de datos
+     */
+    @GetMapping("/por-usuario/{usuarioId}")
+    public ResponseEntity<StreamingResponseBody> buscarPorUsuario(
+            @PathVariable Long usuarioId,
+            @RequestParam(value = "historial", defaultValue = "false") boolean historial) {
+        return json(salida -> listados.escribirPorUsuario(usuarioId, historial, salida));
+    }
+
+    /**
+     * Ejecuta inmediatamente el archivado de préstamos cerrados más antiguos que el horizonte configurado.
+     *
+     * @return Número de préstamos movidos al archivo
+     */
+    @PostMapping("/archivar")
+    public int archivar() {
+        return archivoService.archivar();
+    }
+
+    private ResponseEntity<StreamingResponseBody> json(StreamingResponseBody cuerpo) {
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(listados.limitar(cuerpo));
     }
 
     /**
@@ -144,6 +375,7 @@ public class PrestamoController {
         private String isbn;
         private String numeroCuenta;
         private LocalDate fechaPrestamo;
+        private String sucursal;
 
         /**
          * Constructor vacío necesario para deserialización.
@@ -197,5 +429,130 @@ public class PrestamoController {
         public void setFechaPrestamo(LocalDate fechaPrestamo) {
             this.fechaPrestamo = fechaPrestamo;
         }
+
+        /**
+         * Obtiene la sucursal de la que sale el ejemplar.
+         * @return Código de la sucursal
+         */
+        public String getSucursal() {
+            return sucursal;
+        }
+
+        /**
+         * Establece la sucursal de la que sale el ejemplar (opcional; por defecto, la sucursal por defecto).
+         * @param sucursal Código de la sucursal
+         */
+        public void setSucursal(String sucursal) {
+            this.sucursal = sucursal;
+        }
+    }
+
+    /**
+     * DTO utilizado para recibir los préstamos a devolver en lote.
+     * Se pueden indicar IDs de préstamo, ISBN de libros, o ambos.
+     */
+    public static class DevolucionLoteDto {
+        private List<Long> ids;
+        private List<String> isbns;
+        private String sucursal;
+
+        /**
+         * Constructor vacío necesario para deserialización.
+         */
+        public DevolucionLoteDto() { }
+
+        /**
+         * Obtiene los IDs de los préstamos a devolver.
+         * @return IDs de préstamo
+         */
+        public List<Long> getIds() {
+            return ids;
+        }
+
+        /**
+         * Establece los IDs de los préstamos a devolver.
+         * @param ids IDs de préstamo
+         */
+        public void setIds(List<Long> ids) {
+            this.ids = ids;
+        }
+
+        /**
+         * Obtiene los ISBN de los libros devueltos; cada aparición devuelve un ejemplar.
+         * @return ISBN de los libros
+         */
+        public List<String> getIsbns() {
+            return isbns;
+        }
+
+        /**
+         * Establece los ISBN de los libros devueltos; cada aparición devuelve un ejemplar.
+         * @param isbns ISBN de los libros
+         */
+        public void setIsbns(List<String> isbns) {
+            this.isbns = isbns;
+        }
+
+        /**
+         * Obtiene la sucursal donde se devuelven los libros indicados por ISBN (opcional).
+         * @return Código de la sucursal, o null
+         */
+        public String getSucursal() {
+            return sucursal;
+        }
+
+        /**
+         * Establece la sucursal donde se devuelven los libros indicados por ISBN (opcional).
+         * @param sucursal Código de la sucursal
+         */
+        public void setSucursal(String sucursal) {
+            this.sucursal = sucursal;
+        }
+    }
+
+    /**
+     * DTO de respuesta de una devolución en lote.
+     */
+    public static class ResultadoDevolucionDto {
+        private final int devueltos;
+        private final List<Long> idsYaCerrados;
+        private final List<String> isbnsSinPrestamoActivo;
+
+        /**
+         * Constructor con todos los campos del resultado.
+         *
+         * @param devueltos              Número de préstamos cerrados por esta petición
+         * @param idsYaCerrados          IDs recibidos que ya estaban cerrados o no existen
+         * @param isbnsSinPrestamoActivo ISBN recibidos que no tenían ningún préstamo activo
+         */
+        public ResultadoDevolucionDto(int devueltos, List<Long> idsYaCerrados, List<String> isbnsSinPrestamoActivo) {
+            this.devueltos = devueltos;
+            this.idsYaCerrados = idsYaCerrados;
+            this.isbnsSinPrestamoActivo = isbnsSinPrestamoActivo;
+        }
+
+        /**
+         * Obtiene el número de préstamos cerrados por esta petición.
+         * @return Préstamos devueltos
+         */
+        public int getDevueltos() {
+            return devueltos;
+        }
+
+        /**
+         * Obtiene los IDs recibidos que ya estaban cerrados o no existen.
+         * @return IDs ya cerrados
+         */
+        public List<Long> getIdsYaCerrados() {
+            return idsYaCerrados;
+        }
+
+        /**
+         * Obtiene los ISBN recibidos que no tenían ningún préstamo activo.
+         * @return ISBN sin préstamo activo
+         */
+        public List<String> getIsbnsSinPrestamoActivo() {
+            return isbnsSinPrestamoActivo;
+        }
     }
-}
+}
\ No newline at end of file
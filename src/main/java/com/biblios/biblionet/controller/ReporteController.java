@@ -0,0 +1,100 @@
+package com.biblios.biblionet.controller;
+
+import com.biblios.biblionet.service.ReporteCirculacionService;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Locale;
+
+/**
+ * Controlador REST para los informes de circulación.
+ * Expone endpoints bajo la ruta /api/reportes.
+ */
+@RestController
+@RequestMapping("/api/reportes")
+@CrossOrigin(origins = "*")
+public class ReporteController {
+
+    private final ReporteCirculacionService reportes;
+
+    /**
+     * Constructor con inyección de dependencias.
+     *
+     * @param reportes Servicio de informes de circulación
+     */
+    public ReporteController(ReporteCirculacionService reportes) {
+        this.reportes = reportes;
+    }
+
+    /**
+     * Devuelve el número de préstamos de un periodo agrupados por género, autor o mes.
+     *
+     * @param dimension Criterio de agrupación: genero, autor o mes
+     * @param desde     Fecha de préstamo mínima (inclusive, yyyy-MM-dd)
+     * @param hasta     Fecha de préstamo máxima (inclusive, yyyy-MM-dd)
+     * @param historial Si es true (por defecto), incluye también los préstamos archivados
+     * @return Informe en JSON
+     */
+    @GetMapping("/circulacion")
+    public ReporteCirculacionService.Reporte circulacion(
+            @RequestParam("dimension") String dimension,
+            @RequestParam("desde") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+            @RequestParam("hasta") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta,
+            @RequestParam(value = "historial", defaultValue = "true") boolean historial) {
+        if (hasta.isBefore(desde)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "La fecha final es anterior a la inicial");
+        }
+        return reportes.generar(parsearDimension(dimension), desde, hasta, historial);
+    }
+
+    /**
+     * Devuelve el mismo informe que {@link #circulacion} como fichero CSV con las columnas clave y prestamos.
+     *
+     * @param dimension Criterio de agrupación: genero, autor o mes
+     * @param desde     Fecha de préstamo mínima (inclusive, yyyy-MM-dd)
+     * @param hasta     Fecha de préstamo máxima (inclusive, yyyy-MM-dd)
+     * @param historial Si es true (por defecto), incluye también los préstamos archivados
+     * @return Informe en CSV
+     */
+    @GetMapping(value = "/circulacion.csv", produces = "text/csv")
+    public ResponseEntity<String> circulacionCsv(
+            @RequestParam("dimension") String dimension,
+            @RequestParam("desde") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+            @RequestParam("hasta") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta,
+            @RequestParam(value = "historial", defaultValue = "true") boolean historial) {
+        ReporteCirculacionService.Reporte reporte = circulacion(dimension, desde, hasta, historial);
+        StringBuilder csv = new StringBuilder("clave,prestamos\n");
+        for (ReporteCirculacionService.Fila fila : reporte.getFilas()) {
+            csv.append(csv(fila.getClave())).append(',').append(fila.getPrestamos()).append('\n');
+        }
+        String nombre = "circulacion-" + reporte.getDimension().name().toLowerCase(Locale.ROOT)
+                + "-" + desde + "-" + hasta + ".csv";
+        return ResponseEntity.ok()
+                .contentType(new MediaType("text", "csv", StandardCharsets.UTF_8))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + nombre + "\"")
+                .body(csv.toString());
+    }
+
+    private static ReporteCirculacionService.Dimension parsearDimension(String valor) {
+        try {
+            return ReporteCirculacionService.Dimension.valueOf(valor.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Dimensión no válida: " + valor + " (se admite genero, autor o mes)");
+        }
+    }
+
+    private static String csv(String valor) {
+        if (valor.indexOf(',') < 0 && valor.indexOf('"') < 0 && valor.indexOf('\n') < 0) {
+            return valor;
+        }
+        return '"' + valor.replace("\"", "\"\"") + '"';
+    }
+}
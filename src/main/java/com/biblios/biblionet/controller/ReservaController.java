@@ -0,0 +1,159 @@
+package com.biblios.biblionet.controller;
+
+import com.biblios.biblionet.model.Libro;
+import com.biblios.biblionet.model.Reserva;
+import com.biblios.biblionet.model.Usuario;
+import com.biblios.biblionet.repository.LibroRepository;
+import com.biblios.biblionet.repository.UsuarioRepository;
+import com.biblios.biblionet.service.ReservaService;
+import jakarta.persistence.EntityNotFoundException;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+/**
+ * Controlador REST para gestionar las reservas de libros prestados.
+ * Expone endpoints bajo la ruta /api/reservas.
+ */
+@RestController
+@RequestMapping("/api/reservas")
+@CrossOrigin(origins = "*")
+public class ReservaController {
+
+    private final ReservaService reservas;
+    private final LibroRepository libroRepo;
+    private final UsuarioRepository usuarioRepo;
+
+    /**
+     * Constructor con inyección de dependencias.
+     *
+     * @param reservas    Servicio de reservas
+     * @param libroRepo   Repositorio de libros
+     * @param usuarioRepo Repositorio de usuarios
+     */
+    public ReservaController(ReservaService reservas, LibroRepository libroRepo, UsuarioRepository usuarioRepo) {
+        this.reservas = reservas;
+        this.libroRepo = libroRepo;
+        this.usuarioRepo = usuarioRepo;
+    }
+
+    /**
+     * Pone al usuario en la cola de reservas de un libro prestado. Cuando se devuelva un ejemplar,
+     * el préstamo se creará automáticamente para la reserva más antigua.
+     *
+     * @param dto DTO con el ISBN del libro y el número de cuenta del usuario
+     * @return Reserva creada, o 409 si el libro está disponible o el usuario ya está en la cola
+     */
+    @PostMapping("/crear")
+    public Reserva crearReserva(@RequestBody ReservaDto dto) {
+        Libro libro = libroRepo.findByIsbn(dto.getIsbn())
+                .orElseThrow(() -> new EntityNotFoundException("Libro no encontrado con ISBN " + dto.getIsbn()));
+
+        Usuario usuario = usuarioRepo.findByNumeroCuenta(dto.getNumeroCuenta())
+                .orElseThrow(() -> new EntityNotFoundException("Usuario no encontrado con número de cuenta " + dto.getNumeroCuenta()));
+
+        return reservas.reservar(libro, usuario);
+    }
+
+    /**
+     * Cancela una reserva en espera.
+     *
+     * @param id ID de la reserva
+     * @return Reserva cancelada, 404 si no existe o 409 si ya no está en espera
+     */
+    @PutMapping("/{id}/cancelar")
+    public ResponseEntity<Reserva> cancelar(@PathVariable Long id) {
+        return reservas.cancelar(id)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Devuelve la cola de reservas en espera de un libro, en orden de llegada.
+     *
+     * @param libroId ID del libro
+     * @return Reservas en espera
+     */
+    @GetMapping("/libro/{libroId}")
+    public List<Reserva> cola(@PathVariable Long libroId) {
+        return reservas.cola(libroId);
+    }
+
+    /**
+     * Devuelve cuántas reservas hay en espera para un libro.
+     *
+     * @param libroId ID del libro
+     * @return Profundidad de la cola
+     */
+    @GetMapping("/libro/{libroId}/profundidad")
+    public long profundidad(@PathVariable Long libroId) {
+        return reservas.profundidad(libroId);
+    }
+
+    /**
+     * Devuelve las reservas de un usuario por su número de cuenta.
+     *
+     * @param numeroCuenta Número de cuenta del usuario
+     * @return Reservas del usuario
+     */
+    @GetMapping("/por-cuenta")
+    public List<Reserva> porCuenta(@RequestParam("numeroCuenta") String numeroCuenta) {
+        return reservas.porCuenta(numeroCuenta);
+    }
+
+    /**
+     * Devuelve las métricas de las colas de reserva: reservas en espera y tiempos de espera.
+     *
+     * @return Estadísticas de reservas
+     */
+    @GetMapping("/estadisticas")
+    public ReservaService.EstadisticasDto estadisticas() {
+        return reservas.estadisticas();
+    }
+
+    /**
+     * DTO utilizado para recibir datos al crear una reserva.
+     */
+    public static class ReservaDto {
+        private String isbn;
+        private String numeroCuenta;
+
+        /**
+         * Constructor vacío necesario para deserialización.
+         */
+        public ReservaDto() { }
+
+        /**
+         * Obtiene el ISBN del libro a reservar.
+         * @return ISBN del libro
+         */
+        public String getIsbn() {
+            return isbn;
+        }
+
+        /**
+         * Establece el ISBN del libro a reservar.
+         * @param isbn ISBN del libro
+         */
+        public void setIsbn(String isbn) {
+            this.isbn = isbn;
+        }
+
+        /**
+         * Obtiene el número de cuenta del usuario que reserva.
+         * @return Número de cuenta del usuario
+         */
+        public String getNumeroCuenta() {
+            return numeroCuenta;
+        }
+
+        /**
+         * Establece el número de cuenta del usuario que reserva.
+         * @param numeroCuenta Número de cuenta
+         */
+        public void setNumeroCuenta(String numeroCuenta) {
+            this.numeroCuenta = numeroCuenta;
+        }
+    }
+}
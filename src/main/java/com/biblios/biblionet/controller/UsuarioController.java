@@ -2,9 +2,15 @@ package com.biblios.biblionet.controller;
 
 import com.biblios.biblionet.model.Usuario;
 import com.biblios.biblionet.repository.UsuarioRepository;
+import com.biblios.biblionet.service.AutocompletadoService;
+import com.biblios.biblionet.service.ClusterService;
+import com.biblios.biblionet.service.SincronizacionUsuariosService;
 
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
 
 /**
@@ -17,14 +23,24 @@ import java.util.List;
 public class UsuarioController {
 
     private final UsuarioRepository usuarioRepo;
+    private final AutocompletadoService autocompletado;
+    private final ClusterService cluster;
+    private final SincronizacionUsuariosService sincronizacion;
 
     /**
      * Constructor con inyección de dependencias.
      *
      * @param libroRepo Repositorio de usuarios
+     * @param autocompletado Servicio de autocompletado, actualizado al crear usuarios
+     * @param cluster Coordinación con los demás nodos, avisados de cada usuario creado
+     * @param sincronizacion Servicio de sincronización con el fichero del registro escolar
      */
-    public UsuarioController(UsuarioRepository libroRepo) {
+    public UsuarioController(UsuarioRepository libroRepo, AutocompletadoService autocompletado,
+                             ClusterService cluster, SincronizacionUsuariosService sincronizacion) {
         this.usuarioRepo = libroRepo;
+        this.autocompletado = autocompletado;
+        this.cluster = cluster;
+        this.sincronizacion = sincronizacion;
     }
 
     /**
@@ -45,7 +61,24 @@ public class UsuarioController {
      */
     @PostMapping("/crear")
     public Usuario crearUsuario(@RequestBody Usuario usuario){
-        return usuarioRepo.save(usuario);
+        Usuario guardado = usuarioRepo.save(usuario);
+        autocompletado.agregarUsuario(guardado);
+        cluster.publicar(ClusterService.Cambio.usuario(guardado.getId()));
+        return guardado;
+    }
+
+    /**
+     * Sincroniza los usuarios con el fichero de cuentas exportado por el registro escolar: un CSV
+     * (coma o punto y coma) con las columnas número de cuenta y nombre y cabecera opcional.
+     * Crea las cuentas nuevas y actualiza el nombre de las existentes; no elimina ninguna.
+     *
+     * @param fichero Contenido del fichero en UTF-8
+     * @return Resumen con las filas insertadas, actualizadas y rechazadas, y el rendimiento obtenido
+     * @throws IOException si falla la lectura del fichero
+     */
+    @PostMapping(value = "/sincronizar", consumes = { "text/csv", MediaType.TEXT_PLAIN_VALUE })
+    public SincronizacionUsuariosService.ResultadoDto sincronizar(InputStream fichero) throws IOException {
+        return sincronizacion.sincronizar(fichero);
     }
 
     /**
@@ -0,0 +1,22 @@
+package com.biblios.biblionet.model;
+
+/**
+ * Estados posibles de una {@link Reserva}.
+ */
+public enum EstadoReserva {
+
+    /**
+     * La reserva está en la cola del libro esperando a que se devuelva un ejemplar.
+     */
+    EN_ESPERA,
+
+    /**
+     * Se devolvió un ejemplar y se creó el préstamo para el usuario de la reserva.
+     */
+    ASIGNADA,
+
+    /**
+     * El usuario canceló la reserva antes de que se le asignara un ejemplar.
+     */
+    CANCELADA
+}
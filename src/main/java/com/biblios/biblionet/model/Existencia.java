@@ -0,0 +1,138 @@
+package com.biblios.biblionet.model;
+
+import jakarta.persistence.*;
+
+/**
+ * Representa los ejemplares de un libro que tiene una sucursal de la biblioteca.
+ * Cada instancia corresponde a un registro en la tabla "existencias", con un único registro por
+ * libro y sucursal. Los contadores se modifican solo mediante sentencias UPDATE atómicas
+ * en {@link com.biblios.biblionet.repository.ExistenciaRepository}.
+ */
+@Entity
+@Table(name = "existencias", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_existencia_libro_sucursal", columnNames = { "libro_id", "sucursal" })
+})
+public class Existencia {
+
+    /**
+     * Identificador único del registro. Se genera automáticamente.
+     */
+    @Id
+    @GeneratedValue(strategy = GenerationType.AUTO)
+    private Long id;
+
+    /**
+     * Libro al que pertenecen los ejemplares. No puede ser nulo.
+     */
+    @ManyToOne(optional = false)
+    @JoinColumn(name = "libro_id", nullable = false)
+    private Libro libro;
+
+    /**
+     * Código de la sucursal. No puede ser nulo y tiene un máximo de 50 caracteres.
+     */
+    @Column(nullable = false, length = 50)
+    private String sucursal;
+
+    /**
+     * Número total de ejemplares del libro en la sucursal.
+     */
+    @Column(name = "total_ejemplares", nullable = false)
+    private int totalEjemplares;
+
+    /**
+     * Número de ejemplares disponibles (no prestados) en la sucursal.
+     */
+    @Column(nullable = false)
+    private int disponibles;
+
+    /**
+     * Constructor vacío requerido por JPA.
+     */
+    public Existencia() {
+        // Constructor vacío requerido por JPA
+    }
+
+    /**
+     * Constructor para registrar ejemplares nuevos de un libro en una sucursal, todos disponibles.
+     *
+     * @param libro    Libro de los ejemplares
+     * @param sucursal Código de la sucursal
+     * @param cantidad Número de ejemplares
+     */
+    public Existencia(Libro libro, String sucursal, int cantidad) {
+        this.libro = libro;
+        this.sucursal = sucursal;
+        this.totalEjemplares = cantidad;
+        this.disponibles = cantidad;
+    }
+
+    /**
+     * Constructor para registrar ejemplares de un libro en una sucursal de los que algunos ya están prestados.
+     *
+     * @param libro     Libro de los ejemplares
+     * @param sucursal  Código de la sucursal
+     * @param cantidad  Número total de ejemplares
+     * @param prestados Número de ejemplares prestados, como máximo la cantidad
+     */
+    public Existencia(Libro libro, String sucursal, int cantidad, int prestados) {
+        this(libro, sucursal, cantidad);
+        this.disponibles = cantidad - prestados;
+    }
+
+    // ——— Getters ———
+
+    /**
+     * Obtiene el ID del registro.
+     *
+     * @return ID del registro
+     */
+    public Long getId() {
+        return id;
+    }
+
+    /**
+     * Obtiene el libro de los ejemplares.
+     *
+     * @return Libro
+     */
+    public Libro getLibro() {
+        return libro;
+    }
+
+    /**
+     * Obtiene el código de la sucursal.
+     *
+     * @return Código de la sucursal
+     */
+    public String getSucursal() {
+        return sucursal;
+    }
+
+    /**
+     * Obtiene el número total de ejemplares.
+     *
+     * @return Total de ejemplares
+     */
+    public int getTotalEjemplares() {
+        return totalEjemplares;
+    }
+
+    /**
+     * Obtiene el número de ejemplares disponibles.
+     *
+     * @return Ejemplares disponibles
+     */
+    public int getDisponibles() {
+        return disponibles;
+    }
+
+    /**
+     * Obtiene el número de ejemplares prestados.
+     *
+     * @return Ejemplares prestados
+     */
+    public int getPrestados() {
+        return totalEjemplares - disponibles;
+    }
+}
@@ -46,6 +46,13 @@ public class Prestamo {
     @Column(name = "fecha_devolucion")
     private LocalDate fechaDevolucion;
 
+    /**
+     * Código de la sucursal de la que salió el ejemplar. Solo es nulo en préstamos ya devueltos
+     * antes de que hubiera existencias por sucursal; a los activos se les asigna la sucursal por defecto al arrancar.
+     */
+    @Column(length = 50)
+    private String sucursal;
+
     /**
      * Constructor vacío requerido por JPA.
      */
@@ -159,4 +166,22 @@ public class Prestamo {
     public void setFechaDevolucion(LocalDate fechaDevolucion) {
         this.fechaDevolucion = fechaDevolucion;
     }
+
+    /**
+     * Obtiene el código de la sucursal de la que salió el ejemplar.
+     *
+     * @return Código de la sucursal, o null si el préstamo no tiene sucursal
+     */
+    public String getSucursal() {
+        return sucursal;
+    }
+
+    /**
+     * Establece el código de la sucursal de la que salió el ejemplar.
+     *
+     * @param sucursal Código de la sucursal (puede ser null)
+     */
+    public void setSucursal(String sucursal) {
+        this.sucursal = sucursal;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,134 @@
+package com.biblios.biblionet.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDate;
+
+/**
+ * Representa un préstamo cerrado que ha sido movido al archivo histórico.
+ * Cada instancia corresponde a un registro en la tabla "prestamos_historico", particionada
+ * lógicamente por el año de devolución (columna "periodo").
+ */
+@Entity
+@Table(name = "prestamos_historico", indexes = {
+        @Index(name = "idx_historico_periodo", columnList = "periodo"),
+        @Index(name = "idx_historico_libro", columnList = "libro_id"),
+        @Index(name = "idx_historico_usuario", columnList = "usuario_id")
+})
+public class PrestamoHistorico {
+
+    /**
+     * Identificador del préstamo. Se conserva el mismo ID que tenía en la tabla "prestamos".
+     */
+    @Id
+    private Long id;
+
+    /**
+     * Libro prestado. Relación muchos a uno con la entidad Libro.
+     */
+    @ManyToOne(optional = false)
+    @JoinColumn(name = "libro_id", nullable = false)
+    private Libro libro;
+
+    /**
+     * Usuario que realizó el préstamo. Relación muchos a uno con la entidad Usuario.
+     */
+    @ManyToOne(optional = false)
+    @JoinColumn(name = "usuario_id", nullable = false)
+    private Usuario usuario;
+
+    /**
+     * Fecha en que se realizó el préstamo.
+     */
+    @Column(name = "fecha_prestamo", nullable = false)
+    private LocalDate fechaPrestamo;
+
+    /**
+     * Fecha en que se devolvió el libro.
+     */
+    @Column(name = "fecha_devolucion", nullable = false)
+    private LocalDate fechaDevolucion;
+
+    /**
+     * Código de la sucursal de la que salió el ejemplar, si la tenía.
+     */
+    @Column(length = 50)
+    private String sucursal;
+
+    /**
+     * Partición a la que pertenece el registro: año de la fecha de devolución.
+     */
+    @Column(name = "periodo", nullable = false)
+    private Integer periodo;
+
+    /**
+     * Constructor vacío requerido por JPA.
+     */
+    public PrestamoHistorico() {
+        // Constructor vacío requerido por JPA
+    }
+
+    // ——— Getters ———
+
+    /**
+     * Obtiene el ID del préstamo archivado.
+     *
+     * @return ID del préstamo
+     */
+    public Long getId() {
+        return id;
+    }
+
+    /**
+     * Obtiene el libro prestado.
+     *
+     * @return Libro prestado
+     */
+    public Libro getLibro() {
+        return libro;
+    }
+
+    /**
+     * Obtiene el usuario que realizó el préstamo.
+     *
+     * @return Usuario del préstamo
+     */
+    public Usuario getUsuario() {
+        return usuario;
+    }
+
+    /**
+     * Obtiene la fecha del préstamo.
+     *
+     * @return Fecha del préstamo
+     */
+    public LocalDate getFechaPrestamo() {
+        return fechaPrestamo;
+    }
+
+    /**
+     * Obtiene la fecha de devolución del libro.
+     *
+     * @return Fecha de devolución
+     */
+    public LocalDate getFechaDevolucion() {
+        return fechaDevolucion;
+    }
+
+    /**
+     * Obtiene el código de la sucursal de la que salió el ejemplar.
+     *
+     * @return Código de la sucursal, o null
+     */
+    public String getSucursal() {
+        return sucursal;
+    }
+
+    /**
+     * Obtiene el periodo (año de devolución) del registro.
+     *
+     * @return Periodo del registro
+     */
+    public Integer getPeriodo() {
+        return periodo;
+    }
+}
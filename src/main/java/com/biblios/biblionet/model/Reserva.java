@@ -0,0 +1,176 @@
+package com.biblios.biblionet.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Representa la reserva de un libro por parte de un usuario mientras el libro está prestado.
+ * Las reservas de un libro forman una cola FIFO ordenada por fecha de solicitud.
+ * Cada instancia corresponde a un registro en la tabla "reservas" de la base de datos.
+ */
+@Entity
+@Table(name = "reservas", indexes = {
+        @Index(name = "idx_reserva_cola", columnList = "libro_id, estado, fecha_solicitud")
+})
+public class Reserva {
+
+    /**
+     * Identificador único de la reserva. Se genera automáticamente.
+     */
+    @Id
+    @GeneratedValue(strategy = GenerationType.AUTO)
+    private Long id;
+
+    /**
+     * Libro reservado. No puede ser nulo.
+     */
+    @ManyToOne(optional = false)
+    @JoinColumn(name = "libro_id", nullable = false)
+    private Libro libro;
+
+    /**
+     * Usuario que hace la reserva. No puede ser nulo.
+     */
+    @ManyToOne(optional = false)
+    @JoinColumn(name = "usuario_id", nullable = false)
+    private Usuario usuario;
+
+    /**
+     * Momento en que se solicitó la reserva. Determina la posición en la cola.
+     */
+    @Column(name = "fecha_solicitud", nullable = false)
+    private LocalDateTime fechaSolicitud;
+
+    /**
+     * Estado actual de la reserva.
+     */
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private EstadoReserva estado;
+
+    /**
+     * Momento en que se asignó un ejemplar a la reserva. Nulo mientras está en espera.
+     */
+    @Column(name = "fecha_asignacion")
+    private LocalDateTime fechaAsignacion;
+
+    /**
+     * ID del préstamo creado al asignar la reserva. Se guarda sin clave foránea
+     * porque los préstamos cerrados se mueven al archivo histórico.
+     */
+    @Column(name = "prestamo_id")
+    private Long prestamoId;
+
+    /**
+     * Constructor vacío requerido por JPA.
+     */
+    public Reserva() {
+        // Constructor vacío requerido por JPA
+    }
+
+    /**
+     * Constructor para crear una reserva en espera.
+     *
+     * @param libro          Libro reservado
+     * @param usuario        Usuario que reserva
+     * @param fechaSolicitud Momento de la solicitud
+     */
+    public Reserva(Libro libro, Usuario usuario, LocalDateTime fechaSolicitud) {
+        this.libro = libro;
+        this.usuario = usuario;
+        this.fechaSolicitud = fechaSolicitud;
+        this.estado = EstadoReserva.EN_ESPERA;
+    }
+
+    // ——— Getters y Setters ———
+
+    /**
+     * Obtiene el ID de la reserva.
+     *
+     * @return ID de la reserva
+     */
+    public Long getId() {
+        return id;
+    }
+
+    /**
+     * Obtiene el libro reservado.
+     *
+     * @return Libro reservado
+     */
+    public Libro getLibro() {
+        return libro;
+    }
+
+    /**
+     * Obtiene el usuario que hizo la reserva.
+     *
+     * @return Usuario de la reserva
+     */
+    public Usuario getUsuario() {
+        return usuario;
+    }
+
+    /**
+     * Obtiene el momento de la solicitud.
+     *
+     * @return Fecha y hora de la solicitud
+     */
+    public LocalDateTime getFechaSolicitud() {
+        return fechaSolicitud;
+    }
+
+    /**
+     * Obtiene el estado de la reserva.
+     *
+     * @return Estado de la reserva
+     */
+    public EstadoReserva getEstado() {
+        return estado;
+    }
+
+    /**
+     * Establece el estado de la reserva.
+     *
+     * @param estado Estado a establecer
+     */
+    public void setEstado(EstadoReserva estado) {
+        this.estado = estado;
+    }
+
+    /**
+     * Obtiene el momento en que se asignó un ejemplar.
+     *
+     * @return Fecha y hora de asignación, o null si sigue en espera
+     */
+    public LocalDateTime getFechaAsignacion() {
+        return fechaAsignacion;
+    }
+
+    /**
+     * Establece el momento en que se asignó un ejemplar.
+     *
+     * @param fechaAsignacion Fecha y hora de asignación
+     */
+    public void setFechaAsignacion(LocalDateTime fechaAsignacion) {
+        this.fechaAsignacion = fechaAsignacion;
+    }
+
+    /**
+     * Obtiene el ID del préstamo creado al asignar la reserva.
+     *
+     * @return ID del préstamo, o null si sigue en espera
+     */
+    public Long getPrestamoId() {
+        return prestamoId;
+    }
+
+    /**
+     * Establece el ID del préstamo creado al asignar la reserva.
+     *
+     * @param prestamoId ID del préstamo
+     */
+    public void setPrestamoId(Long prestamoId) {
+        this.prestamoId = prestamoId;
+    }
+}
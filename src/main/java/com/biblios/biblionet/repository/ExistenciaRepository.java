@@ -0,0 +1,172 @@
+package com.biblios.biblionet.repository;
+
+import com.biblios.biblionet.model.Existencia;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Repositorio para la entidad {@link Existencia}.
+ * Los contadores de ejemplares se modifican con sentencias UPDATE condicionales, de modo que
+ * prestar y devolver ejemplares es atómico sin necesidad de bloquear ni leer antes el registro.
+ */
+@Repository
+@Transactional(readOnly = true)
+public interface ExistenciaRepository extends JpaRepository<Existencia, Long> {
+
+    /**
+     * Busca las existencias de un libro en una sucursal.
+     *
+     * @param libroId  ID del libro
+     * @param sucursal Código de la sucursal
+     * @return Un {@link Optional} con las existencias si la sucursal tiene ejemplares del libro
+     */
+    Optional<Existencia> findByLibroIdAndSucursal(Long libroId, String sucursal);
+
+    /**
+     * Busca las existencias de un libro en todas las sucursales.
+     *
+     * @param libroId ID del libro
+     * @return Lista de existencias por sucursal
+     */
+    List<Existencia> findByLibroId(Long libroId);
+
+    /**
+     * Verifica si alguna sucursal tiene más ejemplares disponibles del libro que el mínimo indicado.
+     *
+     * @param libroId ID del libro
+     * @param minimo  Número de ejemplares que se debe superar (normalmente 0)
+     * @return true si alguna sucursal tiene ejemplares disponibles
+     */
+    boolean existsByLibroIdAndDisponiblesGreaterThan(Long libroId, int minimo);
+
+    /**
+     * Busca los libros que no tienen existencias en ninguna sucursal, con sus préstamos activos,
+     * en orden de ID.
+     *
+     * @param pagina Página de resultados (normalmente la primera, con el tamaño de un lote)
+     * @return Libros sin existencias y número de préstamos activos de cada uno
+     */
+    @Query("""
+      SELECT l.id AS libroId,
+             (SELECT COUNT(p) FROM Prestamo p WHERE p.libro = l AND p.fechaDevolucion IS NULL) AS prestados
+        FROM Libro l
+       WHERE NOT EXISTS (
+         SELECT e.id
+           FROM Existencia e
+          WHERE e.libro = l
+       )
+       ORDER BY l.id
+    """)
+    List<LibroSinExistencias> findBooksWithoutCopies(Pageable pagina);
+
+    /**
+     * Suma los ejemplares prestados de un libro en todas las sucursales.
+     *
+     * @param libroId ID del libro
+     * @return Número de ejemplares prestados
+     */
+    @Query("SELECT COALESCE(SUM(e.totalEjemplares - e.disponibles), 0) FROM Existencia e WHERE e.libro.id = :libroId")
+    long countLoanedCopies(@Param("libroId") Long libroId);
+
+    /**
+     * Descuenta un ejemplar disponible, solo si queda alguno.
+     *
+     * @param libroId  ID del libro
+     * @param sucursal Código de la sucursal
+     * @return 1 si se descontó el ejemplar, 0 si no había ejemplares disponibles
+     */
+    @Transactional
+    @Modifying
+    @Query("""
+      UPDATE Existencia e
+         SET e.disponibles = e.disponibles - 1
+       WHERE e.libro.id = :libroId
+         AND e.sucursal = :sucursal
+         AND e.disponibles > 0
+    """)
+    int takeCopy(@Param("libroId") Long libroId, @Param("sucursal") String sucursal);
+
+    /**
+     * Devuelve un ejemplar a los disponibles, sin superar el total de ejemplares.
+     *
+     * @param libroId  ID del libro
+     * @param sucursal Código de la sucursal
+     * @return 1 si se devolvió el ejemplar, 0 en caso contrario
+     */
+    @Transactional
+    @Modifying
+    @Query("""
+      UPDATE Existencia e
+         SET e.disponibles = e.disponibles + 1
+       WHERE e.libro.id = :libroId
+         AND e.sucursal = :sucursal
+         AND e.disponibles < e.totalEjemplares
+    """)
+    int releaseCopy(@Param("libroId") Long libroId, @Param("sucursal") String sucursal);
+
+    /**
+     * Devuelve a los disponibles, con una sola sentencia, los ejemplares de los préstamos indicados
+     * que tengan sucursal asignada.
+     *
+     * @param prestamoIds IDs de los préstamos cuyos ejemplares se devuelven
+     * @return Número de registros de existencias actualizados
+     */
+    @Transactional
+    @Modifying
+    @Query(value = """
+      UPDATE existencias e
+         SET disponibles = LEAST(total_ejemplares, disponibles + (
+               SELECT COUNT(*) FROM prestamos p
+                WHERE p.id IN (:prestamoIds) AND p.libro_id = e.libro_id AND p.sucursal = e.sucursal))
+       WHERE EXISTS (
+               SELECT 1 FROM prestamos p
+                WHERE p.id IN (:prestamoIds) AND p.libro_id = e.libro_id AND p.sucursal = e.sucursal)
+    """, nativeQuery = true)
+    int releaseCopiesOfLoans(@Param("prestamoIds") Collection<Long> prestamoIds);
+
+    /**
+     * Añade (o retira, con cantidad negativa) ejemplares de un libro en una sucursal.
+     * Solo se pueden retirar ejemplares que estén disponibles.
+     *
+     * @param libroId  ID del libro
+     * @param sucursal Código de la sucursal
+     * @param cantidad Ejemplares a añadir (positivo) o retirar (negativo)
+     * @return 1 si se actualizó el registro, 0 si no existe o no hay suficientes ejemplares disponibles
+     */
+    @Transactional
+    @Modifying
+    @Query("""
+      UPDATE Existencia e
+         SET e.totalEjemplares = e.totalEjemplares + :cantidad,
+             e.disponibles = e.disponibles + :cantidad
+       WHERE e.libro.id = :libroId
+         AND e.sucursal = :sucursal
+         AND e.disponibles + :cantidad >= 0
+    """)
+    int addCopies(@Param("libroId") Long libroId, @Param("sucursal") String sucursal, @Param("cantidad") int cantidad);
+
+    /**
+     * Proyección con un libro sin existencias y sus préstamos activos.
+     */
+    interface LibroSinExistencias {
+
+        /**
+         * @return ID del libro
+         */
+        Long getLibroId();
+
+        /**
+         * @return Número de préstamos activos del libro
+         */
+        long getPrestados();
+    }
+}
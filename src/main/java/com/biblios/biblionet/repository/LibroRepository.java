@@ -8,12 +8,14 @@ import java.util.Optional;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 /**
  * Repositorio para la entidad {@link Libro}.
  * Proporciona métodos CRUD y consultas personalizadas para interactuar con la base de datos.
  */
 @Repository
+@Transactional(readOnly = true)
 public interface LibroRepository extends JpaRepository<Libro, Long> {
 
     /**
@@ -33,18 +35,19 @@ public interface LibroRepository extends JpaRepository<Libro, Long> {
     List<Libro> findByTituloContainingIgnoreCase(String fragmento);
 
     /**
-     * Devuelve todos los libros que **no están en préstamo activo**.
-     * Es decir, aquellos cuyos IDs no aparecen en préstamos con `fechaDevolucion IS NULL`.
+     * Devuelve todos los libros que tienen **algún ejemplar disponible** en alguna sucursal,
+     * según los contadores de existencias.
      *
      * @return Lista de libros actualmente disponibles para préstamo
      */
     @Query("""
-      SELECT l 
-        FROM Libro l 
-       WHERE l.id NOT IN (
-         SELECT p.libro.id 
-           FROM Prestamo p 
-          WHERE p.fechaDevolucion IS NULL
+      SELECT l
+        FROM Libro l
+       WHERE EXISTS (
+         SELECT e.id
+           FROM Existencia e
+          WHERE e.libro = l
+            AND e.disponibles > 0
        )
     """)
     List<Libro> findAllAvailable();
@@ -0,0 +1,91 @@
+package com.biblios.biblionet.repository;
+
+import com.biblios.biblionet.model.PrestamoHistorico;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import jakarta.persistence.QueryHint;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Repositorio para la entidad {@link PrestamoHistorico}.
+ * Proporciona consultas sobre el archivo de préstamos cerrados y la operación de archivado.
+ */
+@Repository
+@Transactional(readOnly = true)
+public interface PrestamoHistoricoRepository extends JpaRepository<PrestamoHistorico, Long> {
+
+    /**
+     * Recorre todo el archivo en orden cronológico devolviendo solo los pares (usuario, libro),
+     * sin cargar las entidades. El stream debe consumirse y cerrarse dentro de una transacción.
+     *
+     * @return Pares (ID de usuario, ID de libro) ordenados por fecha de préstamo
+     */
+    @QueryHints(@QueryHint(name = "org.hibernate.fetchSize", value = "1000"))
+    @Query("SELECT h.usuario.id AS usuarioId, h.libro.id AS libroId FROM PrestamoHistorico h ORDER BY h.fechaPrestamo, h.id")
+    Stream<PrestamoRepository.ParUsuarioLibro> streamUserBookPairs();
+
+    /**
+     * Obtiene el menor y el mayor ID de los préstamos archivados hechos entre dos fechas.
+     *
+     * @param inicio Fecha de préstamo mínima (inclusive)
+     * @param fin    Fecha de préstamo máxima (inclusive)
+     * @return Rango de IDs; ambos extremos son null si no hay préstamos en el periodo
+     */
+    @Query("""
+      SELECT MIN(h.id) AS minimo, MAX(h.id) AS maximo
+        FROM PrestamoHistorico h
+       WHERE h.fechaPrestamo BETWEEN :inicio AND :fin
+    """)
+    PrestamoRepository.RangoIds findIdRangeByFechaPrestamoBetween(@Param("inicio") LocalDate inicio,
+                                                                  @Param("fin") LocalDate fin);
+
+    /**
+     * Devuelve, para los préstamos archivados de un bloque de IDs hechos entre dos fechas, solo los
+     * campos que usan los informes de circulación.
+     *
+     * @param desde  ID mínimo del bloque (inclusive)
+     * @param hasta  ID máximo del bloque (exclusivo)
+     * @param inicio Fecha de préstamo mínima (inclusive)
+     * @param fin    Fecha de préstamo máxima (inclusive)
+     * @return Género, autor y fecha de cada préstamo del bloque
+     */
+    @Query("""
+      SELECT l.genero AS genero, l.autor AS autor, h.fechaPrestamo AS fechaPrestamo
+        FROM PrestamoHistorico h JOIN h.libro l
+       WHERE h.id >= :desde AND h.id < :hasta
+         AND h.fechaPrestamo BETWEEN :inicio AND :fin
+    """)
+    List<PrestamoRepository.FilaCirculacion> findCirculationRows(@Param("desde") Long desde,
+                                                                 @Param("hasta") Long hasta,
+                                                                 @Param("inicio") LocalDate inicio,
+                                                                 @Param("fin") LocalDate fin);
+
+    /**
+     * Copia al archivo los préstamos devueltos dentro del rango [desde, hasta), asignándoles como
+     * periodo el año de su fecha de devolución. Debe ejecutarse en la misma transacción que el
+     * borrado correspondiente en la tabla principal.
+     *
+     * @param desde Fecha de devolución mínima (inclusive)
+     * @param hasta Fecha de devolución máxima (exclusiva)
+     * @return Número de registros copiados
+     */
+    @Transactional
+    @Modifying
+    @Query(value = """
+      INSERT INTO prestamos_historico (id, libro_id, usuario_id, fecha_prestamo, fecha_devolucion, sucursal, periodo)
+      SELECT p.id, p.libro_id, p.usuario_id, p.fecha_prestamo, p.fecha_devolucion, p.sucursal,
+             EXTRACT(YEAR FROM p.fecha_devolucion)
+        FROM prestamos p
+       WHERE p.fecha_devolucion >= :desde
+         AND p.fecha_devolucion < :hasta
+    """, nativeQuery = true)
+    int copyReturnedBetween(@Param("desde") LocalDate desde, @Param("hasta") LocalDate hasta);
+}
@@ -1,17 +1,27 @@
 package com.biblios.biblionet.repository;
 
+import com.biblios.biblionet.model.EstadoReserva;
 import com.biblios.biblionet.model.Prestamo;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import jakarta.persistence.QueryHint;
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * Repositorio para la entidad {@link Prestamo}.
  * Proporciona operaciones CRUD y consultas personalizadas sobre préstamos de libros.
  */
 @Repository
+@Transactional(readOnly = true)
 public interface PrestamoRepository extends JpaRepository<Prestamo, Long> {
 
     /**
@@ -38,6 +48,41 @@ public interface PrestamoRepository extends JpaRepository<Prestamo, Long> {
      */
     List<Prestamo> findByUsuarioNumeroCuentaAndFechaDevolucionIsNull(String numeroCuenta);
 
+    /**
+     * Cuenta los préstamos activos (no devueltos) de un usuario por número de cuenta.
+     *
+     * @param numeroCuenta Número de cuenta del usuario
+     * @return Número de préstamos activos del usuario
+     */
+    long countByUsuarioNumeroCuentaAndFechaDevolucionIsNull(String numeroCuenta);
+
+    /**
+     * Recorre todos los préstamos activos devolviendo solo el número de cuenta del usuario,
+     * el ID del préstamo y el ID del libro. El stream debe consumirse y cerrarse dentro de una transacción.
+     *
+     * @return Préstamos activos con la cuenta de su usuario
+     */
+    @QueryHints(@QueryHint(name = "org.hibernate.fetchSize", value = "1000"))
+    @Query("""
+      SELECT u.numeroCuenta AS numeroCuenta, p.id AS prestamoId, p.libro.id AS libroId
+        FROM Prestamo p JOIN p.usuario u
+       WHERE p.fechaDevolucion IS NULL
+    """)
+    Stream<PrestamoCuenta> streamActiveWithAccount();
+
+    /**
+     * Devuelve el número de cuenta del usuario y el libro de cada uno de los préstamos indicados.
+     *
+     * @param ids IDs de los préstamos
+     * @return Préstamos con la cuenta de su usuario
+     */
+    @Query("""
+      SELECT u.numeroCuenta AS numeroCuenta, p.id AS prestamoId, p.libro.id AS libroId
+        FROM Prestamo p JOIN p.usuario u
+       WHERE p.id IN :ids
+    """)
+    List<PrestamoCuenta> findWithAccountByIdIn(@Param("ids") Collection<Long> ids);
+
     /**
      * Busca todos los préstamos asociados a un libro por su ID.
      *
@@ -63,10 +108,239 @@ public interface PrestamoRepository extends JpaRepository<Prestamo, Long> {
     List<Prestamo> findByFechaPrestamoBetween(LocalDate desde, LocalDate hasta);
 
     /**
-     * Verifica si existe al menos un préstamo activo (sin devolver) para un libro dado.
+     * Devuelve, de entre los IDs dados, aquellos que corresponden a préstamos activos (sin devolver).
+     *
+     * @param ids IDs de préstamo a verificar
+     * @return IDs de los préstamos que siguen activos
+     */
+    @Query("SELECT p.id FROM Prestamo p WHERE p.id IN :ids AND p.fechaDevolucion IS NULL")
+    List<Long> findActiveIdsByIdIn(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Busca los préstamos activos de los libros con los ISBN dados, devolviendo solo el ID del
+     * préstamo, el ISBN del libro y la sucursal, sin cargar las entidades completas.
      *
-     * @param id ID del libro
-     * @return true si hay préstamos activos para el libro, false en caso contrario
+     * @param isbns Códigos ISBN de los libros
+     * @return ID de préstamo, ISBN y sucursal de los préstamos activos
      */
-    boolean existsByLibroIdAndFechaDevolucionIsNull(Long id);
+    @Query("""
+      SELECT p.id AS id, p.libro.isbn AS isbn, p.sucursal AS sucursal
+        FROM Prestamo p
+       WHERE p.libro.isbn IN :isbns
+         AND p.fechaDevolucion IS NULL
+    """)
+    List<PrestamoActivoIsbn> findActiveByLibroIsbnIn(@Param("isbns") Collection<String> isbns);
+
+    /**
+     * Marca como devueltos, con una sola sentencia UPDATE, los préstamos activos cuyos IDs se indican.
+     * Los préstamos ya cerrados no se modifican.
+     *
+     * @param ids   IDs de los préstamos a cerrar
+     * @param fecha Fecha de devolución a registrar
+     * @return Número de préstamos efectivamente cerrados
+     */
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE Prestamo p SET p.fechaDevolucion = :fecha WHERE p.id IN :ids AND p.fechaDevolucion IS NULL")
+    int markReturned(@Param("ids") Collection<Long> ids, @Param("fecha") LocalDate fecha);
+
+    /**
+     * Asigna una sucursal a los préstamos activos sin sucursal de los libros indicados, para que
+     * su devolución vuelva a sumar el ejemplar a las existencias de esa sucursal.
+     *
+     * @param libroIds IDs de los libros
+     * @param sucursal Código de la sucursal
+     * @return Número de préstamos actualizados
+     */
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("""
+      UPDATE Prestamo p
+         SET p.sucursal = :sucursal
+       WHERE p.libro.id IN :libroIds
+         AND p.sucursal IS NULL
+         AND p.fechaDevolucion IS NULL
+    """)
+    int assignBranchToActiveLoans(@Param("libroIds") Collection<Long> libroIds, @Param("sucursal") String sucursal);
+
+    /**
+     * Busca, de entre los préstamos indicados, aquellos cuyo libro tiene reservas con el estado dado.
+     * Se usa al devolver en lote para asignar los ejemplares a las reservas en espera.
+     *
+     * @param ids    IDs de los préstamos
+     * @param estado Estado de las reservas ({@link EstadoReserva#EN_ESPERA})
+     * @return Préstamos cuyo libro tiene reservas en ese estado
+     */
+    @Query("""
+      SELECT p
+        FROM Prestamo p
+       WHERE p.id IN :ids
+         AND EXISTS (
+           SELECT r.id
+             FROM Reserva r
+            WHERE r.libro = p.libro
+              AND r.estado = :estado
+         )
+    """)
+    List<Prestamo> findWithReservationsByIdIn(@Param("ids") Collection<Long> ids,
+                                              @Param("estado") EstadoReserva estado);
+
+    /**
+     * Obtiene la fecha de devolución más antigua registrada en la tabla de préstamos.
+     *
+     * @return Fecha de devolución más antigua, o null si no hay préstamos cerrados
+     */
+    @Query("SELECT MIN(p.fechaDevolucion) FROM Prestamo p")
+    LocalDate findOldestReturnDate();
+
+    /**
+     * Elimina los préstamos devueltos dentro del rango [desde, hasta). Se usa tras copiarlos al archivo.
+     *
+     * @param desde Fecha de devolución mínima (inclusive)
+     * @param hasta Fecha de devolución máxima (exclusiva)
+     * @return Número de préstamos eliminados
+     */
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM Prestamo p WHERE p.fechaDevolucion >= :desde AND p.fechaDevolucion < :hasta")
+    int deleteReturnedBetween(@Param("desde") LocalDate desde, @Param("hasta") LocalDate hasta);
+
+    /**
+     * Recorre todos los préstamos en orden cronológico devolviendo solo los pares (usuario, libro),
+     * sin cargar las entidades. El stream debe consumirse y cerrarse dentro de una transacción.
+     *
+     * @return Pares (ID de usuario, ID de libro) ordenados por fecha de préstamo
+     */
+    @QueryHints(@QueryHint(name = "org.hibernate.fetchSize", value = "1000"))
+    @Query("SELECT p.usuario.id AS usuarioId, p.libro.id AS libroId FROM Prestamo p ORDER BY p.fechaPrestamo, p.id")
+    Stream<ParUsuarioLibro> streamUserBookPairs();
+
+    /**
+     * Obtiene el menor y el mayor ID de los préstamos hechos entre dos fechas, para repartir
+     * un informe en bloques de IDs.
+     *
+     * @param inicio Fecha de préstamo mínima (inclusive)
+     * @param fin    Fecha de préstamo máxima (inclusive)
+     * @return Rango de IDs; ambos extremos son null si no hay préstamos en el periodo
+     */
+    @Query("""
+      SELECT MIN(p.id) AS minimo, MAX(p.id) AS maximo
+        FROM Prestamo p
+       WHERE p.fechaPrestamo BETWEEN :inicio AND :fin
+    """)
+    RangoIds findIdRangeByFechaPrestamoBetween(@Param("inicio") LocalDate inicio, @Param("fin") LocalDate fin);
+
+    /**
+     * Devuelve, para los préstamos de un bloque de IDs hechos entre dos fechas, solo los campos
+     * que usan los informes de circulación.
+     *
+     * @param desde  ID mínimo del bloque (inclusive)
+     * @param hasta  ID máximo del bloque (exclusivo)
+     * @param inicio Fecha de préstamo mínima (inclusive)
+     * @param fin    Fecha de préstamo máxima (inclusive)
+     * @return Género, autor y fecha de cada préstamo del bloque
+     */
+    @Query("""
+      SELECT l.genero AS genero, l.autor AS autor, p.fechaPrestamo AS fechaPrestamo
+        FROM Prestamo p JOIN p.libro l
+       WHERE p.id >= :desde AND p.id < :hasta
+         AND p.fechaPrestamo BETWEEN :inicio AND :fin
+    """)
+    List<FilaCirculacion> findCirculationRows(@Param("desde") Long desde, @Param("hasta") Long hasta,
+                                              @Param("inicio") LocalDate inicio, @Param("fin") LocalDate fin);
+
+    /**
+     * Proyección con el ID de un préstamo activo, el ISBN del libro prestado y su sucursal.
+     */
+    interface PrestamoActivoIsbn {
+
+        /**
+         * @return ID del préstamo
+         */
+        Long getId();
+
+        /**
+         * @return ISBN del libro prestado
+         */
+        String getIsbn();
+
+        /**
+         * @return Sucursal de la que salió el ejemplar
+         */
+        String getSucursal();
+    }
+
+    /**
+     * Proyección con el usuario y el libro de un préstamo.
+     */
+    interface ParUsuarioLibro {
+
+        /**
+         * @return ID del usuario
+         */
+        Long getUsuarioId();
+
+        /**
+         * @return ID del libro prestado
+         */
+        Long getLibroId();
+    }
+
+    /**
+     * Proyección con un préstamo, su libro y el número de cuenta de su usuario.
+     */
+    interface PrestamoCuenta {
+
+        /**
+         * @return Número de cuenta del usuario
+         */
+        String getNumeroCuenta();
+
+        /**
+         * @return ID del préstamo
+         */
+        Long getPrestamoId();
+
+        /**
+         * @return ID del libro prestado
+         */
+        Long getLibroId();
+    }
+
+    /**
+     * Proyección con el menor y el mayor ID de un conjunto de préstamos.
+     */
+    interface RangoIds {
+
+        /**
+         * @return Menor ID, o null si el conjunto está vacío
+         */
+        Long getMinimo();
+
+        /**
+         * @return Mayor ID, o null si el conjunto está vacío
+         */
+        Long getMaximo();
+    }
+
+    /**
+     * Proyección con los campos de un préstamo usados en los informes de circulación.
+     */
+    interface FilaCirculacion {
+
+        /**
+         * @return Género del libro prestado
+         */
+        String getGenero();
+
+        /**
+         * @return Autor del libro prestado
+         */
+        String getAutor();
+
+        /**
+         * @return Fecha del préstamo
+         */
+        LocalDate getFechaPrestamo();
+    }
 }
@@ -0,0 +1,90 @@
+package com.biblios.biblionet.repository;
+
+import com.biblios.biblionet.model.EstadoReserva;
+import com.biblios.biblionet.model.Reserva;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Repositorio para la entidad {@link Reserva}.
+ * Proporciona las consultas de la cola de reservas de cada libro.
+ */
+@Repository
+@Transactional(readOnly = true)
+public interface ReservaRepository extends JpaRepository<Reserva, Long> {
+
+    /**
+     * Devuelve los IDs de la cola de reservas de un libro en orden de llegada, sin cargar las reservas.
+     *
+     * @param libroId ID del libro
+     * @param estado  Estado de las reservas en cola ({@link EstadoReserva#EN_ESPERA})
+     * @return IDs de las reservas en orden FIFO
+     */
+    @Query("SELECT r.id FROM Reserva r WHERE r.libro.id = :libroId AND r.estado = :estado "
+            + "ORDER BY r.fechaSolicitud, r.id")
+    List<Long> findIdsByLibroIdAndEstado(@Param("libroId") Long libroId, @Param("estado") EstadoReserva estado);
+
+    /**
+     * Obtiene y bloquea una reserva, de modo que dos devoluciones simultáneas del mismo libro no asignen
+     * la misma reserva. El estado leído es el confirmado por quien tuviera el bloqueo antes.
+     *
+     * @param id ID de la reserva
+     * @return La reserva bloqueada, si existe
+     */
+    @Transactional
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT r FROM Reserva r WHERE r.id = :id")
+    Optional<Reserva> findByIdForUpdate(@Param("id") Long id);
+
+    /**
+     * Devuelve la cola de reservas de un libro en orden de llegada.
+     *
+     * @param libroId ID del libro
+     * @param estado  Estado de las reservas a listar
+     * @return Reservas del libro en orden FIFO
+     */
+    List<Reserva> findByLibroIdAndEstadoOrderByFechaSolicitudAscIdAsc(Long libroId, EstadoReserva estado);
+
+    /**
+     * Devuelve las reservas de un usuario por su número de cuenta, de la más reciente a la más antigua.
+     *
+     * @param numeroCuenta Número de cuenta del usuario
+     * @return Reservas del usuario
+     */
+    List<Reserva> findByUsuarioNumeroCuentaOrderByFechaSolicitudDesc(String numeroCuenta);
+
+    /**
+     * Verifica si un usuario ya tiene una reserva con el estado dado para un libro.
+     *
+     * @param libroId   ID del libro
+     * @param usuarioId ID del usuario
+     * @param estado    Estado de la reserva
+     * @return true si existe la reserva
+     */
+    boolean existsByLibroIdAndUsuarioIdAndEstado(Long libroId, Long usuarioId, EstadoReserva estado);
+
+    /**
+     * Cuenta las reservas de un libro con el estado dado.
+     *
+     * @param libroId ID del libro
+     * @param estado  Estado de las reservas
+     * @return Número de reservas
+     */
+    long countByLibroIdAndEstado(Long libroId, EstadoReserva estado);
+
+    /**
+     * Cuenta todas las reservas con el estado dado.
+     *
+     * @param estado Estado de las reservas
+     * @return Número de reservas
+     */
+    long countByEstado(EstadoReserva estado);
+}
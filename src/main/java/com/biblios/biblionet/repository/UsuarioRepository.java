@@ -7,6 +7,7 @@ import java.util.List;
 
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 /**
  * Repositorio para la entidad {@link Usuario}.
@@ -14,6 +15,7 @@ import org.springframework.stereotype.Repository;
  * y consultas personalizadas sobre los usuarios registrados.
  */
 @Repository
+@Transactional(readOnly = true)
 public interface UsuarioRepository extends JpaRepository<Usuario, Long> {
 
     /**
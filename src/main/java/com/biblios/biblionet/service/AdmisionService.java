@@ -0,0 +1,244 @@
+package com.biblios.biblionet.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Control de admisión de peticiones a la API por cliente y clase de coste.
+ * <p>
+ * Cada par (cliente, clase) tiene un cubo de fichas implementado con GCRA (algoritmo genérico de tasa
+ * de celdas): el estado del cubo es un único {@link AtomicLong} con el instante teórico de la siguiente
+ * llegada, que se actualiza con compare-and-set, sin bloqueos. Además, los listados, que son las
+ * peticiones más caras, tienen un límite global de ejecuciones concurrentes: ante una sobrecarga se
+ * rechazan primero, mientras las operaciones de préstamo y devolución siguen admitiéndose.
+ * <p>
+ * Los cubos de clientes inactivos (ya llenos) se descartan periódicamente y también en cuanto una clase
+ * supera el número máximo de clientes en memoria, de modo que la memoria usada está acotada.
+ */
+@Service
+public class AdmisionService {
+
+    private final Map<ClaseCoste, Limite> limites = new EnumMap<>(ClaseCoste.class);
+    private final Map<ClaseCoste, ConcurrentHashMap<String, AtomicLong>> cubos = new EnumMap<>(ClaseCoste.class);
+    private final Map<ClaseCoste, Contadores> contadores = new EnumMap<>(ClaseCoste.class);
+    private final int listadosConcurrentesMaximos;
+    private final int clientesMaximos;
+    private final AtomicInteger listadosEnCurso = new AtomicInteger();
+
+    /**
+     * Constructor con la configuración de cada clase de coste.
+     *
+     * @param operacionPorSegundo   Peticiones por segundo sostenidas de préstamos, devoluciones y altas
+     * @param operacionRafaga       Ráfaga máxima de operaciones
+     * @param consultaPorSegundo    Peticiones por segundo sostenidas de consultas puntuales
+     * @param consultaRafaga        Ráfaga máxima de consultas
+     * @param listadoPorSegundo     Peticiones por segundo sostenidas de listados e informes
+     * @param listadoRafaga         Ráfaga máxima de listados
+     * @param listadosConcurrentes  Listados en ejecución a la vez, entre todos los clientes
+     * @param clientesMaximos       Cubos en memoria por clase antes de forzar el descarte de los inactivos
+     */
+    public AdmisionService(@Value("${biblionet.admision.operacion.por-segundo:20}") double operacionPorSegundo,
+                           @Value("${biblionet.admision.operacion.rafaga:40}") int operacionRafaga,
+                           @Value("${biblionet.admision.consulta.por-segundo:20}") double consultaPorSegundo,
+                           @Value("${biblionet.admision.consulta.rafaga:50}") int consultaRafaga,
+                           @Value("${biblionet.admision.listado.por-segundo:2}") double listadoPorSegundo,
+                           @Value("${biblionet.admision.listado.rafaga:10}") int listadoRafaga,
+                           @Value("${biblionet.admision.listados-concurrentes:4}") int listadosConcurrentes,
+                           @Value("${biblionet.admision.clientes-maximos:100000}") int clientesMaximos) {
+        limites.put(ClaseCoste.OPERACION, new Limite(operacionPorSegundo, operacionRafaga));
+        limites.put(ClaseCoste.CONSULTA, new Limite(consultaPorSegundo, consultaRafaga));
+        limites.put(ClaseCoste.LISTADO, new Limite(listadoPorSegundo, listadoRafaga));
+        for (ClaseCoste clase : ClaseCoste.values()) {
+            cubos.put(clase, new ConcurrentHashMap<>());
+            contadores.put(clase, new Contadores());
+        }
+        this.listadosConcurrentesMaximos = listadosConcurrentes;
+        this.clientesMaximos = clientesMaximos;
+    }
+
+    /**
+     * Decide si se admite una petición y, en ese caso, consume una ficha del cubo del cliente.
+     * Si se admite un listado, debe llamarse a {@link #finalizar} cuando termine.
+     *
+     * @param cliente Identificador del cliente (clave de API o dirección)
+     * @param clase   Clase de coste del endpoint
+     * @return 0 si se admite; si no, nanosegundos que el cliente debería esperar antes de reintentar
+     */
+    public long admitir(String cliente, ClaseCoste clase) {
+        Contadores contador = contadores.get(clase);
+        ConcurrentHashMap<String, AtomicLong> porCliente = cubos.get(clase);
+        long ahora = System.nanoTime();
+        if (porCliente.size() >= clientesMaximos && !porCliente.containsKey(cliente)) {
+            descartarInactivos(porCliente, ahora);
+        }
+        long espera = consumir(porCliente.computeIfAbsent(cliente, c -> new AtomicLong()), limites.get(clase), ahora);
+        if (espera > 0) {
+            contador.rechazadasPorTasa.increment();
+            return espera;
+        }
+        if (clase == ClaseCoste.LISTADO && listadosEnCurso.incrementAndGet() > listadosConcurrentesMaximos) {
+            listadosEnCurso.decrementAndGet();
+            contador.rechazadasPorCarga.increment();
+            return 1_000_000_000L;
+        }
+        contador.admitidas.increment();
+        return 0;
+    }
+
+    /**
+     * Indica que ha terminado una petición admitida.
+     *
+     * @param clase Clase de coste de la petición
+     */
+    public void finalizar(ClaseCoste clase) {
+        if (clase == ClaseCoste.LISTADO) {
+            listadosEnCurso.decrementAndGet();
+        }
+    }
+
+    /**
+     * Elimina los cubos que ya están llenos, es decir, de clientes sin peticiones recientes:
+     * descartarlos equivale a crearlos de nuevo en su próxima petición.
+     */
+    @Scheduled(fixedDelayString = "${biblionet.admision.limpieza-ms:60000}")
+    public void limpiar() {
+        long ahora = System.nanoTime();
+        for (ConcurrentHashMap<String, AtomicLong> porCliente : cubos.values()) {
+            descartarInactivos(porCliente, ahora);
+        }
+    }
+
+    private static void descartarInactivos(ConcurrentHashMap<String, AtomicLong> porCliente, long ahora) {
+        porCliente.values().removeIf(llegada -> llegada.get() - ahora <= 0);
+    }
+
+    /**
+     * Devuelve las peticiones admitidas y rechazadas por clase de coste desde el arranque.
+     *
+     * @return Estadísticas por clase de coste
+     */
+    public Map<ClaseCoste, EstadisticasDto> estadisticas() {
+        Map<ClaseCoste, EstadisticasDto> estadisticas = new LinkedHashMap<>();
+        for (ClaseCoste clase : ClaseCoste.values()) {
+            Contadores contador = contadores.get(clase);
+            estadisticas.put(clase, new EstadisticasDto(contador.admitidas.sum(), contador.rechazadasPorTasa.sum(),
+                    contador.rechazadasPorCarga.sum(), cubos.get(clase).size()));
+        }
+        return estadisticas;
+    }
+
+    /**
+     * GCRA: admite la petición si adelantar el instante teórico de llegada un intervalo no lo aleja
+     * del instante actual más allá de la ráfaga permitida.
+     */
+    private static long consumir(AtomicLong llegadaTeorica, Limite limite, long ahora) {
+        while (true) {
+            long actual = llegadaTeorica.get();
+            long base = actual == 0 || actual - ahora < 0 ? ahora : actual;
+            long siguiente = base + limite.intervaloNanos;
+            long exceso = siguiente - ahora - limite.toleranciaNanos;
+            if (exceso > 0) {
+                return exceso;
+            }
+            if (llegadaTeorica.compareAndSet(actual, siguiente)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Clase de coste de un endpoint.
+     */
+    public enum ClaseCoste {
+        /**
+         * Escrituras: préstamos, devoluciones, reservas y altas.
+         */
+        OPERACION,
+        /**
+         * Consultas puntuales por ID, ISBN o número de cuenta.
+         */
+        CONSULTA,
+        /**
+         * Listados completos, búsquedas e informes.
+         */
+        LISTADO
+    }
+
+    private static final class Limite {
+        final long intervaloNanos;
+        final long toleranciaNanos;
+
+        Limite(double porSegundo, int rafaga) {
+            this.intervaloNanos = (long) (1_000_000_000L / porSegundo);
+            this.toleranciaNanos = intervaloNanos * Math.max(1, rafaga);
+        }
+    }
+
+    private static final class Contadores {
+        final LongAdder admitidas = new LongAdder();
+        final LongAdder rechazadasPorTasa = new LongAdder();
+        final LongAdder rechazadasPorCarga = new LongAdder();
+    }
+
+    /**
+     * Métricas de admisión de una clase de coste.
+     */
+    public static class EstadisticasDto {
+        private final long admitidas;
+        private final long rechazadasPorTasa;
+        private final long rechazadasPorCarga;
+        private final int clientesActivos;
+
+        /**
+         * Constructor con todos los campos.
+         *
+         * @param admitidas          Peticiones admitidas
+         * @param rechazadasPorTasa  Peticiones rechazadas por superar la tasa del cliente
+         * @param rechazadasPorCarga Peticiones rechazadas por exceso de listados concurrentes
+         * @param clientesActivos    Clientes con un cubo en memoria
+         */
+        public EstadisticasDto(long admitidas, long rechazadasPorTasa, long rechazadasPorCarga, int clientesActivos) {
+            this.admitidas = admitidas;
+            this.rechazadasPorTasa = rechazadasPorTasa;
+            this.rechazadasPorCarga = rechazadasPorCarga;
+            this.clientesActivos = clientesActivos;
+        }
+
+        /**
+         * @return Peticiones admitidas
+         */
+        public long getAdmitidas() {
+            return admitidas;
+        }
+
+        /**
+         * @return Peticiones rechazadas por superar la tasa del cliente
+         */
+        public long getRechazadasPorTasa() {
+            return rechazadasPorTasa;
+        }
+
+        /**
+         * @return Peticiones rechazadas por exceso de listados concurrentes
+         */
+        public long getRechazadasPorCarga() {
+            return rechazadasPorCarga;
+        }
+
+        /**
+         * @return Clientes con un cubo en memoria
+         */
+        public int getClientesActivos() {
+            return clientesActivos;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.biblios.biblionet.service;
+
+import com.biblios.biblionet.repository.PrestamoHistoricoRepository;
+import com.biblios.biblionet.repository.PrestamoRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+
+/**
+ * Servicio que mantiene pequeña la tabla de préstamos moviendo los préstamos cerrados
+ * al archivo histórico, particionado por año de devolución.
+ * El historial completo se lista combinando ambas tablas en {@link ListadoPrestamosJsonService}.
+ */
+@Service
+public class ArchivoPrestamosService {
+
+    private static final Logger log = LoggerFactory.getLogger(ArchivoPrestamosService.class);
+
+    private final PrestamoRepository prestamoRepo;
+    private final PrestamoHistoricoRepository historicoRepo;
+    private final TransactionTemplate transacciones;
+    private final int horizonteDias;
+
+    /**
+     * Constructor con inyección de dependencias.
+     *
+     * @param prestamoRepo  Repositorio de préstamos
+     * @param historicoRepo Repositorio del archivo de préstamos
+     * @param transacciones Plantilla para ejecutar cada periodo en su propia transacción
+     * @param horizonteDias Antigüedad mínima (en días desde la devolución) para archivar un préstamo
+     */
+    public ArchivoPrestamosService(PrestamoRepository prestamoRepo,
+                                   PrestamoHistoricoRepository historicoRepo,
+                                   TransactionTemplate transacciones,
+                                   @Value("${biblionet.archivo.horizonte-dias:365}") int horizonteDias) {
+        this.prestamoRepo = prestamoRepo;
+        this.historicoRepo = historicoRepo;
+        this.transacciones = transacciones;
+        this.horizonteDias = horizonteDias;
+    }
+
+    /**
+     * Tarea programada que archiva los préstamos devueltos antes del horizonte configurado.
+     */
+    @Scheduled(cron = "${biblionet.archivo.cron:0 0 3 * * *}")
+    public void archivarProgramado() {
+        int movidos = archivar();
+        if (movidos > 0) {
+            log.info("Archivados {} préstamos devueltos hace más de {} días", movidos, horizonteDias);
+        }
+    }
+
+    /**
+     * Mueve al archivo los préstamos devueltos antes del horizonte configurado.
+     * Se procesa un periodo (año de devolución) por transacción, copiando y borrando
+     * con sentencias set-based, para no mantener bloqueos largos sobre la tabla principal.
+     *
+     * @return Número total de préstamos archivados
+     */
+    public int archivar() {
+        LocalDate limite = LocalDate.now().minusDays(horizonteDias);
+        LocalDate masAntigua = prestamoRepo.findOldestReturnDate();
+        if (masAntigua == null || !masAntigua.isBefore(limite)) {
+            return 0;
+        }
+
+        int total = 0;
+        for (int anio = masAntigua.getYear(); anio <= limite.getYear(); anio++) {
+            LocalDate desde = LocalDate.of(anio, 1, 1);
+            LocalDate siguiente = desde.plusYears(1);
+            LocalDate hasta = siguiente.isBefore(limite) ? siguiente : limite;
+            Integer movidos = transacciones.execute(status -> {
+                int copiados = historicoRepo.copyReturnedBetween(desde, hasta);
+                int borrados = prestamoRepo.deleteReturnedBetween(desde, hasta);
+                if (copiados != borrados) {
+                    throw new IllegalStateException("Archivado inconsistente para el periodo " + desde.getYear()
+                            + ": " + copiados + " copiados, " + borrados + " borrados");
+                }
+                return copiados;
+            });
+            total += movidos != null ? movidos : 0;
+        }
+        return total;
+    }
+}
@@ -0,0 +1,407 @@
+package com.biblios.biblionet.service;
+
+import com.biblios.biblionet.model.Libro;
+import com.biblios.biblionet.model.Usuario;
+import com.biblios.biblionet.repository.LibroRepository;
+import com.biblios.biblionet.repository.UsuarioRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+/**
+ * Servicio de autocompletado en memoria sobre títulos, autores, ISBN y números de cuenta.
+ * Mantiene un {@link TriePrefijos} que se construye al arrancar la aplicación y se actualiza
+ * de forma incremental cada vez que se guarda un libro o un usuario, retirando las claves que tuviera
+ * antes si ya estaba indexado. Si se pierden cambios de otro
+ * nodo del cluster, el índice se reconstruye desde la base de datos y se sustituye de una vez.
+ */
+@Service
+public class AutocompletadoService {
+
+    private static final Logger log = LoggerFactory.getLogger(AutocompletadoService.class);
+
+    /**
+     * Máximo de palabras de un título o autor a partir de las cuales se indexa una clave.
+     */
+    private static final int MAX_PALABRAS = 8;
+
+    private static final Pattern DIACRITICOS = Pattern.compile("\\p{M}+");
+    private static final Pattern ESPACIOS = Pattern.compile("\\s+");
+
+    private final LibroRepository libroRepo;
+    private final UsuarioRepository usuarioRepo;
+    private final long presupuestoBytes;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Object reconstruccion = new Object();
+    private Indice indice = new Indice();
+    /**
+     * Cambios aplicados mientras se construye un índice nuevo, para repetirlos sobre él antes de sustituirlo.
+     */
+    private List<Consumer<Indice>> cambiosDuranteReconstruccion;
+
+    /**
+     * Constructor con inyección de dependencias.
+     *
+     * @param libroRepo        Repositorio de libros
+     * @param usuarioRepo      Repositorio de usuarios
+     * @param presupuestoBytes Memoria máxima estimada del índice; al alcanzarla no se indexan más libros ni usuarios
+     */
+    public AutocompletadoService(LibroRepository libroRepo,
+                                 UsuarioRepository usuarioRepo,
+                                 @Value("${biblionet.autocompletado.presupuesto-bytes:67108864}") long presupuestoBytes) {
+        this.libroRepo = libroRepo;
+        this.usuarioRepo = usuarioRepo;
+        this.presupuestoBytes = presupuestoBytes;
+    }
+
+    /**
+     * Construye el índice a partir de todos los libros y usuarios registrados.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void cargar() {
+        long inicio = System.nanoTime();
+        reconstruir();
+        EstadisticasDto estadisticas = estadisticas();
+        log.info("Índice de autocompletado construido en {} ms: {} entradas, {} nodos, ~{} bytes, {} omitidos",
+                (System.nanoTime() - inicio) / 1_000_000, estadisticas.getEntradas(),
+                estadisticas.getNodos(), estadisticas.getBytesEstimados(), estadisticas.getOmitidos());
+    }
+
+    /**
+     * Agrega al índice el título, autor e ISBN de un libro, sustituyendo los que tuviera indexados
+     * si ya estaba en el índice.
+     *
+     * @param libro Libro guardado
+     */
+    public void agregarLibro(Libro libro) {
+        String[] textos = { libro.getTitulo(), libro.getAutor(), libro.getIsbn() };
+        aplicar(destino -> destino.indexarLibro(libro.getId(), textos));
+    }
+
+    /**
+     * Agrega al índice el número de cuenta de un usuario, sustituyendo el que tuviera indexado
+     * si ya estaba en el índice.
+     *
+     * @param usuario Usuario guardado
+     */
+    public void agregarUsuario(Usuario usuario) {
+        String cuenta = usuario.getNumeroCuenta();
+        aplicar(destino -> destino.indexarUsuario(usuario.getId(), cuenta));
+    }
+
+    /**
+     * Agrega al índice los libros y usuarios creados o modificados en otros nodos.
+     *
+     * @param cambio Cambio recibido de otro nodo
+     */
+    @EventListener
+    public void alCambioRemoto(ClusterService.Cambio cambio) {
+        switch (cambio.tipo()) {
+            case LIBRO -> libroRepo.findById(cambio.id()).ifPresent(this::agregarLibro);
+            case USUARIO -> usuarioRepo.findById(cambio.id()).ifPresent(this::agregarUsuario);
+            default -> { }
+        }
+    }
+
+    /**
+     * Reconstruye el índice cuando se han perdido cambios de otro nodo.
+     *
+     * @param resincronizacion Aviso de resincronización
+     */
+    @EventListener
+    public void alResincronizar(ClusterService.Resincronizacion resincronizacion) {
+        reconstruir();
+    }
+
+    /**
+     * Devuelve las k mejores sugerencias para el prefijo dado.
+     *
+     * @param prefijo Texto escrito por el usuario
+     * @param k       Número máximo de sugerencias
+     * @return Lista de sugerencias, de la más a la menos frecuente
+     */
+    public List<Sugerencia> sugerir(String prefijo, int k) {
+        String clave = normalizar(prefijo);
+        if (clave.isEmpty() || k <= 0) {
+            return List.of();
+        }
+        List<TriePrefijos.Entrada> entradas;
+        lock.readLock().lock();
+        try {
+            entradas = indice.trie.buscar(clave, k);
+        } finally {
+            lock.readLock().unlock();
+        }
+        List<Sugerencia> sugerencias = new ArrayList<>(entradas.size());
+        for (TriePrefijos.Entrada entrada : entradas) {
+            sugerencias.add(new Sugerencia(entrada.texto, entrada.tipo));
+        }
+        return sugerencias;
+    }
+
+    /**
+     * Devuelve las métricas de tamaño del índice.
+     *
+     * @return Estadísticas del índice de autocompletado
+     */
+    public EstadisticasDto estadisticas() {
+        lock.readLock().lock();
+        try {
+            TriePrefijos trie = indice.trie;
+            return new EstadisticasDto(trie.getEntradas(), trie.getNodos(), trie.getCaracteres(),
+                    trie.getBytesEstimados(), presupuestoBytes, indice.omitidos);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Construye un índice nuevo sin bloquear las búsquedas y lo sustituye por el actual. Los libros y
+     * usuarios guardados mientras tanto se repiten sobre el nuevo índice antes de la sustitución.
+     */
+    private void reconstruir() {
+        synchronized (reconstruccion) {
+            lock.writeLock().lock();
+            try {
+                cambiosDuranteReconstruccion = new ArrayList<>();
+            } finally {
+                lock.writeLock().unlock();
+            }
+            Indice nuevo = new Indice();
+            boolean completo = false;
+            try {
+                libroRepo.findAll().forEach(libro -> nuevo.indexarLibro(libro.getId(),
+                        new String[] { libro.getTitulo(), libro.getAutor(), libro.getIsbn() }));
+                usuarioRepo.findAll().forEach(usuario -> nuevo.indexarUsuario(usuario.getId(), usuario.getNumeroCuenta()));
+                completo = true;
+            } finally {
+                lock.writeLock().lock();
+                try {
+                    // Si la lectura falla se conserva el índice anterior, que sigue recibiendo los cambios.
+                    if (completo) {
+                        cambiosDuranteReconstruccion.forEach(cambio -> cambio.accept(nuevo));
+                        indice = nuevo;
+                    }
+                    cambiosDuranteReconstruccion = null;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+        }
+    }
+
+    private void aplicar(Consumer<Indice> cambio) {
+        lock.writeLock().lock();
+        try {
+            cambio.accept(indice);
+            if (cambiosDuranteReconstruccion != null) {
+                cambiosDuranteReconstruccion.add(cambio);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Árbol de prefijos junto con los textos indexados de cada libro y usuario, necesarios para retirar
+     * sus claves cuando cambian. El presupuesto de memoria se comprueba antes de indexar cada libro o
+     * usuario nuevo: al alcanzarlo, no se indexan más y se cuentan como omitidos.
+     */
+    private final class Indice {
+        final TriePrefijos trie = new TriePrefijos();
+        final Map<Long, String[]> libros = new HashMap<>();
+        final Map<Long, String> cuentas = new HashMap<>();
+        int omitidos;
+
+        void indexarLibro(Long id, String[] textos) {
+            String[] anteriores = libros.remove(id);
+            if (anteriores != null) {
+                claves(anteriores, trie::eliminar);
+            } else if (trie.getBytesEstimados() >= presupuestoBytes) {
+                omitidos++;
+                return;
+            }
+            libros.put(id, textos);
+            claves(textos, trie::agregar);
+        }
+
+        void indexarUsuario(Long id, String cuenta) {
+            String anterior = cuentas.remove(id);
+            if (anterior != null) {
+                trie.eliminar(normalizar(anterior), anterior, "CUENTA");
+            } else if (trie.getBytesEstimados() >= presupuestoBytes) {
+                omitidos++;
+                return;
+            }
+            String clave = normalizar(cuenta);
+            if (!clave.isEmpty()) {
+                cuentas.put(id, cuenta);
+                trie.agregar(clave, cuenta, "CUENTA");
+            }
+        }
+
+        /**
+         * Recorre las claves de un libro: el título y el autor a partir de cada una de sus primeras
+         * palabras, y el ISBN completo.
+         */
+        private void claves(String[] textos, Clave accion) {
+            porPalabras(textos[0], "TITULO", accion);
+            porPalabras(textos[1], "AUTOR", accion);
+            String isbn = normalizar(textos[2]);
+            if (!isbn.isEmpty()) {
+                accion.aplicar(isbn, textos[2], "ISBN");
+            }
+        }
+
+        private void porPalabras(String texto, String tipo, Clave accion) {
+            String clave = normalizar(texto);
+            if (clave.isEmpty()) {
+                return;
+            }
+            accion.aplicar(clave, texto, tipo);
+            int palabras = 1;
+            for (int i = clave.indexOf(' '); i >= 0 && palabras < MAX_PALABRAS; i = clave.indexOf(' ', i + 1)) {
+                accion.aplicar(clave.substring(i + 1), texto, tipo);
+                palabras++;
+            }
+        }
+    }
+
+    /**
+     * Operación sobre una clave del árbol: agregarla o retirarla.
+     */
+    @FunctionalInterface
+    private interface Clave {
+        void aplicar(String clave, String texto, String tipo);
+    }
+
+    private static String normalizar(String texto) {
+        if (texto == null) {
+            return "";
+        }
+        String sinAcentos = DIACRITICOS.matcher(Normalizer.normalize(texto, Normalizer.Form.NFD)).replaceAll("");
+        return ESPACIOS.matcher(sinAcentos.toLowerCase()).replaceAll(" ").trim();
+    }
+
+    /**
+     * Sugerencia de autocompletado devuelta al cliente.
+     */
+    public static class Sugerencia {
+        private final String texto;
+        private final String tipo;
+
+        /**
+         * Constructor con todos los campos.
+         *
+         * @param texto Texto sugerido
+         * @param tipo  Tipo de sugerencia (TITULO, AUTOR, ISBN o CUENTA)
+         */
+        public Sugerencia(String texto, String tipo) {
+            this.texto = texto;
+            this.tipo = tipo;
+        }
+
+        /**
+         * Obtiene el texto sugerido.
+         * @return Texto sugerido
+         */
+        public String getTexto() {
+            return texto;
+        }
+
+        /**
+         * Obtiene el tipo de sugerencia.
+         * @return TITULO, AUTOR, ISBN o CUENTA
+         */
+        public String getTipo() {
+            return tipo;
+        }
+    }
+
+    /**
+     * Métricas de tamaño del índice de autocompletado.
+     */
+    public static class EstadisticasDto {
+        private final int entradas;
+        private final int nodos;
+        private final long caracteres;
+        private final long bytesEstimados;
+        private final long presupuestoBytes;
+        private final int omitidos;
+
+        /**
+         * Constructor con todos los campos.
+         *
+         * @param entradas         Pares clave-sugerencia almacenados
+         * @param nodos            Nodos del árbol
+         * @param caracteres       Caracteres en las etiquetas del árbol
+         * @param bytesEstimados   Memoria estimada del índice
+         * @param presupuestoBytes Presupuesto de memoria configurado
+         * @param omitidos         Libros y usuarios sin indexar por haberse alcanzado el presupuesto
+         */
+        public EstadisticasDto(int entradas, int nodos, long caracteres, long bytesEstimados, long presupuestoBytes,
+                               int omitidos) {
+            this.entradas = entradas;
+            this.nodos = nodos;
+            this.caracteres = caracteres;
+            this.bytesEstimados = bytesEstimados;
+            this.presupuestoBytes = presupuestoBytes;
+            this.omitidos = omitidos;
+        }
+
+        /**
+         * @return Pares clave-sugerencia almacenados
+         */
+        public int getEntradas() {
+            return entradas;
+        }
+
+        /**
+         * @return Nodos del árbol
+         */
+        public int getNodos() {
+            return nodos;
+        }
+
+        /**
+         * @return Caracteres en las etiquetas del árbol
+         */
+        public long getCaracteres() {
+            return caracteres;
+        }
+
+        /**
+         * @return Memoria estimada del índice en bytes
+         */
+        public long getBytesEstimados() {
+            return bytesEstimados;
+        }
+
+        /**
+         * @return Presupuesto de memoria configurado en bytes
+         */
+        public long getPresupuestoBytes() {
+            return presupuestoBytes;
+        }
+
+        /**
+         * @return Libros y usuarios sin indexar por haberse alcanzado el presupuesto
+         */
+        public int getOmitidos() {
+            return omitidos;
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package com.biblios.biblionet.service;
+
+import com.biblios.biblionet.model.Libro;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Copia inmutable del catálogo de libros almacenada fuera del heap.
+ * <p>
+ * Los registros se codifican de forma contigua en un {@link ByteBuffer} directo. En el heap solo
+ * quedan dos índices de tipos primitivos: los IDs ordenados con su posición en el buffer (búsqueda
+ * binaria) y una tabla hash abierta por ISBN. Ninguno contiene referencias, así que el recolector de
+ * basura no tiene que recorrerlos, y los objetos {@link Libro} se crean solo al responder una petición.
+ * <p>
+ * Formato de cada registro: id (long), fecha de publicación en días epoch (int, o
+ * {@link Integer#MIN_VALUE} si es nula) y, para título, autor, ISBN y género, la longitud en bytes
+ * (int, o -1 si es nulo) seguida del texto en UTF-8.
+ */
+public final class CatalogoSnapshot {
+
+    private static final int SIN_FECHA = Integer.MIN_VALUE;
+    private static final int NULO = -1;
+
+    private final ByteBuffer datos;
+    private final long[] ids;
+    private final int[] posiciones;
+    private final int[] tablaIsbn;
+    private final long construidoEn;
+
+    private CatalogoSnapshot(ByteBuffer datos, long[] ids, int[] posiciones, int[] tablaIsbn) {
+        this.datos = datos;
+        this.ids = ids;
+        this.posiciones = posiciones;
+        this.tablaIsbn = tablaIsbn;
+        this.construidoEn = System.currentTimeMillis();
+    }
+
+    /**
+     * Construye una copia del catálogo a partir de los libros dados.
+     *
+     * @param libros Libros del catálogo
+     * @return Copia inmutable del catálogo
+     */
+    public static CatalogoSnapshot construir(List<Libro> libros) {
+        List<Libro> ordenados = new ArrayList<>(libros);
+        ordenados.sort(Comparator.comparing(Libro::getId));
+
+        byte[][][] textos = new byte[ordenados.size()][][];
+        int tamano = 0;
+        for (int i = 0; i < ordenados.size(); i++) {
+            Libro libro = ordenados.get(i);
+            textos[i] = new byte[][] {
+                    utf8(libro.getTitulo()), utf8(libro.getAutor()), utf8(libro.getIsbn()), utf8(libro.getGenero())
+            };
+            tamano += Long.BYTES + Integer.BYTES;
+            for (byte[] texto : textos[i]) {
+                tamano += Integer.BYTES + (texto != null ? texto.length : 0);
+            }
+        }
+
+        ByteBuffer datos = ByteBuffer.allocateDirect(tamano);
+        long[] ids = new long[ordenados.size()];
+        int[] posiciones = new int[ordenados.size()];
+        int[] tablaIsbn = new int[Math.max(2, Integer.highestOneBit(Math.max(1, ordenados.size())) << 2)];
+        for (int i = 0; i < ordenados.size(); i++) {
+            Libro libro = ordenados.get(i);
+            ids[i] = libro.getId();
+            posiciones[i] = datos.position();
+            datos.putLong(libro.getId());
+            datos.putInt(libro.getFechaPublicacion() != null ? (int) libro.getFechaPublicacion().toEpochDay() : SIN_FECHA);
+            for (byte[] texto : textos[i]) {
+                if (texto == null) {
+                    datos.putInt(NULO);
+                } else {
+                    datos.putInt(texto.length);
+                    datos.put(texto);
+                }
+            }
+            if (libro.getIsbn() != null) {
+                int ranura = ranura(libro.getIsbn(), tablaIsbn.length);
+                while (tablaIsbn[ranura] != 0) {
+                    ranura = (ranura + 1) & (tablaIsbn.length - 1);
+                }
+                tablaIsbn[ranura] = i + 1;
+            }
+        }
+        return new CatalogoSnapshot(datos.asReadOnlyBuffer(), ids, posiciones, tablaIsbn);
+    }
+
+    /**
+     * Busca un libro por su ID.
+     *
+     * @param id ID del libro
+     * @return Un {@link Optional} con el libro si está en el catálogo
+     */
+    public Optional<Libro> porId(long id) {
+        int indice = Arrays.binarySearch(ids, id);
+        return indice >= 0 ? Optional.of(leer(posiciones[indice])) : Optional.empty();
+    }
+
+    /**
+     * Busca un libro por su ISBN, comparando los bytes directamente en el buffer.
+     *
+     * @param isbn Código ISBN del libro
+     * @return Un {@link Optional} con el libro si está en el catálogo
+     */
+    public Optional<Libro> porIsbn(String isbn) {
+        if (isbn == null) {
+            return Optional.empty();
+        }
+        byte[] buscado = isbn.getBytes(StandardCharsets.UTF_8);
+        int ranura = ranura(isbn, tablaIsbn.length);
+        while (tablaIsbn[ranura] != 0) {
+            int posicion = posiciones[tablaIsbn[ranura] - 1];
+            if (isbnCoincide(posicion, buscado)) {
+                return Optional.of(leer(posicion));
+            }
+            ranura = (ranura + 1) & (tablaIsbn.length - 1);
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Devuelve todos los libros del catálogo, ordenados por ID.
+     *
+     * @return Lista de libros
+     */
+    public List<Libro> todos() {
+        List<Libro> libros = new ArrayList<>(posiciones.length);
+        for (int posicion : posiciones) {
+            libros.add(leer(posicion));
+        }
+        return libros;
+    }
+
+    /**
+     * @return Número de libros en el catálogo
+     */
+    public int getLibros() {
+        return ids.length;
+    }
+
+    /**
+     * @return Bytes ocupados fuera del heap por los registros
+     */
+    public long getBytesFueraDelHeap() {
+        return datos.capacity();
+    }
+
+    /**
+     * @return Bytes ocupados en el heap por los índices
+     */
+    public long getBytesIndices() {
+        return (long) ids.length * Long.BYTES + (long) posiciones.length * Integer.BYTES
+                + (long) tablaIsbn.length * Integer.BYTES;
+    }
+
+    /**
+     * @return Momento de construcción, en milisegundos epoch
+     */
+    public long getConstruidoEn() {
+        return construidoEn;
+    }
+
+    private Libro leer(int posicion) {
+        Libro libro = new Libro();
+        libro.setId(datos.getLong(posicion));
+        int dias = datos.getInt(posicion + Long.BYTES);
+        libro.setFechaPublicacion(dias != SIN_FECHA ? LocalDate.ofEpochDay(dias) : null);
+        int[] cursor = { posicion + Long.BYTES + Integer.BYTES };
+        libro.setTitulo(leerTexto(cursor));
+        libro.setAutor(leerTexto(cursor));
+        libro.setIsbn(leerTexto(cursor));
+        libro.setGenero(leerTexto(cursor));
+        return libro;
+    }
+
+    private String leerTexto(int[] cursor) {
+        int longitud = datos.getInt(cursor[0]);
+        cursor[0] += Integer.BYTES;
+        if (longitud == NULO) {
+            return null;
+        }
+        byte[] bytes = new byte[longitud];
+        datos.get(cursor[0], bytes);
+        cursor[0] += longitud;
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private boolean isbnCoincide(int posicion, byte[] buscado) {
+        int cursor = posicion + Long.BYTES + Integer.BYTES;
+        for (int campo = 0; campo < 2; campo++) {
+            int longitud = datos.getInt(cursor);
+            cursor += Integer.BYTES + Math.max(longitud, 0);
+        }
+        if (datos.getInt(cursor) != buscado.length) {
+            return false;
+        }
+        cursor += Integer.BYTES;
+        for (int i = 0; i < buscado.length; i++) {
+            if (datos.get(cursor + i) != buscado[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int ranura(String isbn, int capacidad) {
+        int hash = isbn.hashCode();
+        return (hash ^ (hash >>> 16)) & (capacidad - 1);
+    }
+
+    private static byte[] utf8(String texto) {
+        return texto != null ? texto.getBytes(StandardCharsets.UTF_8) : null;
+    }
+}
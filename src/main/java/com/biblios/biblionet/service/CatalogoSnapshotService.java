@@ -0,0 +1,149 @@
+package com.biblios.biblionet.service;
+
+import com.biblios.biblionet.repository.LibroRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Servicio que mantiene la copia fuera del heap del catálogo ({@link CatalogoSnapshot}) usada por
+ * los endpoints de solo lectura de libros.
+ * <p>
+ * La copia se reconstruye periódicamente y, en segundo plano, cada vez que se invalida por un cambio
+ * en los libros; la nueva copia sustituye a la anterior de forma atómica. Mientras una invalidación
+ * no se ha reflejado en la copia, {@link #vigente()} devuelve null y las lecturas van a la base de datos.
+ * Lo mismo ocurre mientras el cluster no garantiza haber recibido los cambios de libros de los demás nodos.
+ */
+@Service
+public class CatalogoSnapshotService {
+
+    private static final Logger log = LoggerFactory.getLogger(CatalogoSnapshotService.class);
+
+    private final LibroRepository libroRepo;
+    private final ClusterService cluster;
+    private final ExecutorService reconstructor = Executors.newSingleThreadExecutor(r -> {
+        Thread hilo = new Thread(r, "catalogo-snapshot");
+        hilo.setDaemon(true);
+        return hilo;
+    });
+    private final AtomicBoolean reconstruccionPendiente = new AtomicBoolean();
+
+    /**
+     * Versión del catálogo: se incrementa con cada invalidación.
+     */
+    private final AtomicLong version = new AtomicLong(1);
+
+    /**
+     * Copia actual junto con la versión del catálogo que refleja, publicadas como una sola referencia.
+     */
+    private volatile Construida actual;
+
+    /**
+     * Constructor con inyección de dependencias.
+     *
+     * @param libroRepo Repositorio de libros
+     * @param cluster   Coordinación con los demás nodos
+     */
+    public CatalogoSnapshotService(LibroRepository libroRepo, ClusterService cluster) {
+        this.libroRepo = libroRepo;
+        this.cluster = cluster;
+    }
+
+    /**
+     * Construye la primera copia del catálogo al arrancar la aplicación.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void inicializar() {
+        reconstruir();
+    }
+
+    /**
+     * Reconstruye la copia periódicamente, para reflejar también cambios hechos fuera de la aplicación.
+     */
+    @Scheduled(fixedDelayString = "${biblionet.catalogo.intervalo-ms:300000}",
+            initialDelayString = "${biblionet.catalogo.intervalo-ms:300000}")
+    public void reconstruirProgramado() {
+        reconstruir();
+    }
+
+    /**
+     * Marca la copia como obsoleta y programa su reconstrucción en segundo plano.
+     * Debe llamarse después de confirmar cualquier cambio en los libros.
+     */
+    public void invalidar() {
+        version.incrementAndGet();
+        if (reconstruccionPendiente.compareAndSet(false, true)) {
+            reconstructor.execute(() -> {
+                reconstruccionPendiente.set(false);
+                reconstruir();
+            });
+        }
+    }
+
+    /**
+     * Invalida la copia cuando otro nodo modifica un libro.
+     *
+     * @param cambio Cambio recibido de otro nodo
+     */
+    @EventListener
+    public void alCambioRemoto(ClusterService.Cambio cambio) {
+        if (cambio.tipo() == ClusterService.Cambio.Tipo.LIBRO) {
+            invalidar();
+        }
+    }
+
+    /**
+     * Invalida la copia cuando se han perdido cambios de otro nodo.
+     *
+     * @param resincronizacion Aviso de resincronización
+     */
+    @EventListener
+    public void alResincronizar(ClusterService.Resincronizacion resincronizacion) {
+        invalidar();
+    }
+
+    /**
+     * Devuelve la copia del catálogo si refleja todos los cambios conocidos.
+     *
+     * @return Copia vigente, o null si aún no existe o está obsoleta
+     */
+    public CatalogoSnapshot vigente() {
+        Construida construida = actual;
+        return construida != null && construida.version() == version.get() && cluster.coherente()
+                ? construida.snapshot()
+                : null;
+    }
+
+    /**
+     * Devuelve la última copia construida, esté vigente o no, para informar de su tamaño.
+     *
+     * @return Última copia construida, o null si aún no existe
+     */
+    public CatalogoSnapshot ultima() {
+        Construida construida = actual;
+        return construida != null ? construida.snapshot() : null;
+    }
+
+    private synchronized void reconstruir() {
+        long versionLeida = version.get();
+        long inicio = System.nanoTime();
+        try {
+            CatalogoSnapshot nuevo = CatalogoSnapshot.construir(libroRepo.findAll());
+            actual = new Construida(nuevo, versionLeida);
+            log.debug("Catálogo fuera del heap reconstruido en {} ms: {} libros, {} bytes",
+                    (System.nanoTime() - inicio) / 1_000_000, nuevo.getLibros(), nuevo.getBytesFueraDelHeap());
+        } catch (RuntimeException e) {
+            log.warn("No se pudo reconstruir el catálogo fuera del heap", e);
+        }
+    }
+
+    private record Construida(CatalogoSnapshot snapshot, long version) { }
+}
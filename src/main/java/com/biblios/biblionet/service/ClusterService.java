@@ -0,0 +1,564 @@
+package com.biblios.biblionet.service;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Coordinación entre varias instancias de la aplicación detrás de un balanceador.
+ * <p>
+ * Cada instancia envía por UDP a las demás ({@code biblionet.cluster.nodos}) un mensaje por cada cambio
+ * confirmado en libros, usuarios o préstamos, y un latido periódico. Los mensajes llevan un número de
+ * secuencia por nodo emisor, asignado y enviado bajo el mismo cerrojo para que salgan en orden; los cambios
+ * recibidos se publican, en orden de secuencia, como eventos {@link Cambio} para que cada caché local los
+ * aplique. Un mensaje que llega adelantado se retiene hasta {@code biblionet.cluster.reordenacion-ms} a la
+ * espera de los anteriores; si no llegan, se da por perdido algún cambio y se publica un evento
+ * {@link Resincronizacion}, ante el que cada caché se recarga por completo desde la base de datos. La recarga
+ * se hace en un hilo propio, para que el receptor y los latidos sigan funcionando mientras tanto; las
+ * resincronizaciones pedidas mientras otra espera a empezar se agrupan en ella.
+ * <p>
+ * Cada mensaje lleva la dirección con la que el emisor aparece en {@code biblionet.cluster.nodos}
+ * ({@code biblionet.cluster.direccion}, o la que los demás usan para enviarle, aprendida del primer mensaje
+ * recibido) y la dirección de la lista a la que se envió. Así un nodo se reconoce aunque responda desde otra
+ * interfaz o tras una traducción de direcciones; también se reconoce por la dirección de origen del mensaje.
+ * Las direcciones que no se resuelven, o de las que no llega nada, se vuelven a resolver en cada latido.
+ * <p>
+ * Garantía de obsolescencia: todos los nodos configurados cuentan desde el arranque. Mientras de alguno
+ * no haya llegado nada (ni siquiera un latido) en los últimos {@code biblionet.cluster.obsolescencia-maxima-ms},
+ * incluido uno con el que nunca se ha contactado o que ha quedado aislado en una partición, y mientras dure
+ * una resincronización, {@link #coherente()} devuelve false y las cachés sirven desde la base de datos.
+ * Para retirar un nodo hay que quitarlo de {@code biblionet.cluster.nodos}. El propio nodo se reconoce al
+ * recibir sus mensajes y deja de contar. El estado de secuencia de un emisor (que cambia de identificador en
+ * cada arranque) se descarta tras {@code biblionet.cluster.expiracion-ms} sin noticias suyas.
+ * <p>
+ * Con {@code biblionet.cluster.habilitado=false} (por defecto) no se abre ningún socket y las cachés
+ * se consideran siempre coherentes.
+ */
+@Service
+public class ClusterService {
+
+    private static final Logger log = LoggerFactory.getLogger(ClusterService.class);
+    private static final String PREFIJO = "BIBLIONET2";
+    private static final String SEPARADOR = "|";
+    private static final int TAMANO_MAXIMO = 1024;
+    private static final int PENDIENTES_MAXIMOS = 256;
+
+    private final ApplicationEventPublisher eventos;
+    private final boolean habilitado;
+    private final int puerto;
+    private final List<Destino> destinos = new CopyOnWriteArrayList<>();
+    private final long obsolescenciaMaximaNanos;
+    private final long reordenacionNanos;
+    private final long expiracionNanos;
+    private final String nodo = UUID.randomUUID().toString().substring(0, 8);
+    private volatile String direccion;
+
+    private final Object envio = new Object();
+    private long secuencia;
+    private final Map<String, Emisor> emisores = new ConcurrentHashMap<>();
+    private volatile DatagramSocket socket;
+
+    private final ExecutorService resincronizador = Executors.newSingleThreadExecutor(r -> {
+        Thread hilo = new Thread(r, "cluster-resincronizacion");
+        hilo.setDaemon(true);
+        return hilo;
+    });
+    private final AtomicInteger resincronizacionesPendientes = new AtomicInteger();
+    private final AtomicBoolean resincronizacionEncolada = new AtomicBoolean();
+
+    private final LongAdder enviados = new LongAdder();
+    private final LongAdder recibidos = new LongAdder();
+    private final LongAdder reordenados = new LongAdder();
+    private final LongAdder perdidos = new LongAdder();
+    private final LongAdder resincronizaciones = new LongAdder();
+
+    /**
+     * Constructor con la configuración del cluster.
+     *
+     * @param eventos                Publicador de eventos de Spring, para entregar los cambios recibidos
+     * @param habilitado             Si la coordinación está activa
+     * @param puerto                 Puerto UDP local en el que se reciben los mensajes
+     * @param nodos                  Direcciones host:puerto de todos los nodos (puede incluir el propio)
+     * @param direccion              Dirección host:puerto de este nodo en la lista de nodos (vacía para
+     *                               aprenderla de los mensajes recibidos)
+     * @param obsolescenciaMaximaMs  Tiempo máximo sin noticias de un nodo antes de dejar de usar las cachés
+     * @param reordenacionMs         Tiempo que se espera a un mensaje anterior antes de darlo por perdido
+     * @param expiracionMs           Tiempo sin noticias tras el que se descarta la secuencia de un emisor
+     */
+    public ClusterService(ApplicationEventPublisher eventos,
+                          @Value("${biblionet.cluster.habilitado:false}") boolean habilitado,
+                          @Value("${biblionet.cluster.puerto:7701}") int puerto,
+                          @Value("${biblionet.cluster.nodos:}") List<String> nodos,
+                          @Value("${biblionet.cluster.direccion:}") String direccion,
+                          @Value("${biblionet.cluster.obsolescencia-maxima-ms:2000}") long obsolescenciaMaximaMs,
+                          @Value("${biblionet.cluster.reordenacion-ms:200}") long reordenacionMs,
+                          @Value("${biblionet.cluster.expiracion-ms:60000}") long expiracionMs) {
+        this.eventos = eventos;
+        this.habilitado = habilitado;
+        this.puerto = puerto;
+        this.obsolescenciaMaximaNanos = obsolescenciaMaximaMs * 1_000_000L;
+        this.reordenacionNanos = reordenacionMs * 1_000_000L;
+        this.expiracionNanos = expiracionMs * 1_000_000L;
+        this.direccion = direccion.isBlank() ? null : direccion.trim();
+        for (String nombre : nodos) {
+            if (nombre.isBlank() || nombre.trim().equals(this.direccion)) {
+                continue;
+            }
+            int separador = nombre.lastIndexOf(':');
+            String host = nombre.substring(0, separador).trim();
+            int puertoDestino = Integer.parseInt(nombre.substring(separador + 1).trim());
+            if (puertoDestino != puerto || !esLocal(host)) {
+                Destino destino = new Destino(nombre.trim(), host, puertoDestino);
+                if (destino.direccion.isUnresolved()) {
+                    log.warn("No se pudo resolver el nodo de cluster {}; se reintentará en cada latido", nombre);
+                }
+                destinos.add(destino);
+            }
+        }
+    }
+
+    /**
+     * Abre el socket y arranca el hilo receptor al terminar de arrancar la aplicación.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void iniciar() {
+        if (!habilitado) {
+            return;
+        }
+        try {
+            socket = new DatagramSocket(puerto);
+        } catch (SocketException e) {
+            throw new IllegalStateException("No se pudo abrir el puerto de cluster " + puerto, e);
+        }
+        Thread receptor = new Thread(this::recibir, "cluster-receptor");
+        receptor.setDaemon(true);
+        receptor.start();
+        log.info("Nodo de cluster {} escuchando en el puerto {}; {} nodos remotos", nodo, puerto, destinos.size());
+    }
+
+    /**
+     * Cierra el socket al detener la aplicación.
+     */
+    @PreDestroy
+    public void detener() {
+        resincronizador.shutdownNow();
+        DatagramSocket abierto = socket;
+        if (abierto != null) {
+            abierto.close();
+        }
+    }
+
+    /**
+     * Difunde un cambio a los demás nodos. Si hay una transacción en curso, se envía solo cuando esta se
+     * confirma, para que los demás nodos no lean de la base de datos un estado anterior al cambio.
+     *
+     * @param cambio Cambio a difundir
+     */
+    public void publicar(Cambio cambio) {
+        if (!habilitado) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    enviar(cambio);
+                }
+            });
+        } else {
+            enviar(cambio);
+        }
+    }
+
+    /**
+     * Indica si las cachés locales reflejan todos los cambios de los demás nodos con el retraso máximo
+     * configurado. Mientras devuelve false, las cachés deben servir desde la base de datos.
+     *
+     * @return true si de todos los nodos configurados hay noticias recientes y no hay resincronización en curso
+     */
+    public boolean coherente() {
+        if (!habilitado) {
+            return true;
+        }
+        if (resincronizacionesPendientes.get() > 0) {
+            return false;
+        }
+        long ahora = System.nanoTime();
+        for (Destino destino : destinos) {
+            if (!destino.contactado || ahora - destino.ultimoContacto > obsolescenciaMaximaNanos) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Vuelve a resolver las direcciones sin resolver o de las que no llega nada, envía un latido a los demás
+     * nodos, da por perdidos los mensajes que no han llegado dentro de la ventana de reordenación y descarta
+     * la secuencia de los emisores que llevan demasiado tiempo sin dar señales.
+     */
+    @Scheduled(fixedDelayString = "${biblionet.cluster.latido-ms:500}")
+    public void latir() {
+        if (!habilitado || socket == null) {
+            return;
+        }
+        long ahora = System.nanoTime();
+        for (Destino destino : destinos) {
+            if (destino.direccion.isUnresolved() || ahora - destino.ultimoContacto > obsolescenciaMaximaNanos) {
+                destino.direccion = new InetSocketAddress(destino.host, destino.puerto);
+            }
+        }
+        enviar(Cambio.latido());
+        for (Map.Entry<String, Emisor> entrada : emisores.entrySet()) {
+            Emisor emisor = entrada.getValue();
+            synchronized (emisor) {
+                if (emisor.huecoDesde != 0 && ahora - emisor.huecoDesde > reordenacionNanos) {
+                    declararHueco(entrada.getKey(), emisor);
+                }
+            }
+        }
+        emisores.values().removeIf(emisor -> ahora - emisor.ultimoContacto > expiracionNanos);
+    }
+
+    /**
+     * Devuelve el estado del cluster visto desde este nodo.
+     *
+     * @return Estadísticas del cluster
+     */
+    public Map<String, Object> estadisticas() {
+        Map<String, Object> estadisticas = new LinkedHashMap<>();
+        estadisticas.put("habilitado", habilitado);
+        estadisticas.put("nodo", nodo);
+        estadisticas.put("coherente", coherente());
+        estadisticas.put("enviados", enviados.sum());
+        estadisticas.put("recibidos", recibidos.sum());
+        estadisticas.put("reordenados", reordenados.sum());
+        estadisticas.put("perdidos", perdidos.sum());
+        estadisticas.put("resincronizaciones", resincronizaciones.sum());
+        estadisticas.put("resincronizacionesPendientes", resincronizacionesPendientes.get());
+        estadisticas.put("direccion", direccion);
+        Map<String, Long> ultimoContactoMs = new LinkedHashMap<>();
+        List<String> sinContacto = new ArrayList<>();
+        List<String> sinResolver = new ArrayList<>();
+        long ahora = System.nanoTime();
+        for (Destino destino : destinos) {
+            ultimoContactoMs.put(destino.nombre,
+                    destino.contactado ? (ahora - destino.ultimoContacto) / 1_000_000 : null);
+            if (!destino.contactado || ahora - destino.ultimoContacto > obsolescenciaMaximaNanos) {
+                sinContacto.add(destino.nombre);
+            }
+            if (destino.direccion.isUnresolved()) {
+                sinResolver.add(destino.nombre);
+            }
+        }
+        estadisticas.put("msDesdeUltimoContacto", ultimoContactoMs);
+        estadisticas.put("nodosSinContacto", sinContacto);
+        estadisticas.put("nodosSinResolver", sinResolver);
+        return estadisticas;
+    }
+
+    private void enviar(Cambio cambio) {
+        DatagramSocket abierto = socket;
+        if (abierto == null) {
+            return;
+        }
+        // La secuencia se asigna y el mensaje se envía bajo el mismo cerrojo: si no, dos hilos podrían
+        // enviar sus mensajes en orden inverso al de sus secuencias y el receptor vería un hueco.
+        synchronized (envio) {
+            String contenido = String.join(SEPARADOR, Long.toString(++secuencia),
+                    cambio.tipo().name(), Long.toString(cambio.id()), Long.toString(cambio.libroId()),
+                    Long.toString(cambio.usuarioId()), cambio.numeroCuenta() != null ? cambio.numeroCuenta() : "");
+            String origen = direccion != null ? direccion : "";
+            for (Destino destino : destinos) {
+                InetSocketAddress resuelta = destino.direccion;
+                if (resuelta.isUnresolved()) {
+                    continue;
+                }
+                byte[] datos = String.join(SEPARADOR, PREFIJO, nodo, origen, destino.nombre, contenido)
+                        .getBytes(StandardCharsets.UTF_8);
+                try {
+                    abierto.send(new DatagramPacket(datos, datos.length, resuelta));
+                    enviados.increment();
+                } catch (IOException e) {
+                    log.debug("No se pudo enviar el mensaje de cluster a {}", destino.direccion, e);
+                }
+            }
+        }
+    }
+
+    private void recibir() {
+        byte[] bufer = new byte[TAMANO_MAXIMO];
+        while (!socket.isClosed()) {
+            DatagramPacket paquete = new DatagramPacket(bufer, bufer.length);
+            try {
+                socket.receive(paquete);
+                procesar(paquete.getSocketAddress(),
+                        new String(paquete.getData(), 0, paquete.getLength(), StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                if (!socket.isClosed()) {
+                    log.warn("Error al recibir un mensaje de cluster", e);
+                }
+            } catch (RuntimeException e) {
+                log.warn("Error al aplicar un mensaje de cluster", e);
+            }
+        }
+    }
+
+    private void procesar(SocketAddress origen, String mensaje) {
+        String[] campos = mensaje.split("\\|", -1);
+        if (campos.length != 10 || !PREFIJO.equals(campos[0])) {
+            return;
+        }
+        String remitente = campos[2];
+        String destinatario = campos[3];
+        if (direccion == null && !destinatario.isEmpty()) {
+            // Los demás (o este mismo nodo, si está en su lista) envían a la dirección con la que figura en ella.
+            direccion = destinatario;
+        }
+        if (nodo.equals(campos[1])) {
+            // La lista de nodos incluye este mismo nodo con otra dirección: no hay que esperar sus latidos.
+            destinos.removeIf(destino -> destino.nombre.equals(destinatario));
+            return;
+        }
+        recibidos.increment();
+        long ahora = System.nanoTime();
+        for (Destino destino : destinos) {
+            if (destino.nombre.equals(remitente) || destino.direccion.equals(origen)) {
+                destino.ultimoContacto = ahora;
+                destino.contactado = true;
+            }
+        }
+
+        long recibida = Long.parseLong(campos[4]);
+        Cambio cambio = new Cambio(Cambio.Tipo.valueOf(campos[5]), Long.parseLong(campos[6]),
+                Long.parseLong(campos[7]), Long.parseLong(campos[8]), campos[9].isEmpty() ? null : campos[9]);
+        Emisor emisor = emisores.computeIfAbsent(campos[1], id -> new Emisor());
+        synchronized (emisor) {
+            emisor.ultimoContacto = ahora;
+            if (emisor.ultimaSecuencia == 0) {
+                // Primer mensaje de un emisor (nodo nuevo o reiniciado): si ya había enviado cambios,
+                // este nodo no los ha visto.
+                emisor.ultimaSecuencia = recibida;
+                entregar(cambio);
+                if (recibida > 1) {
+                    resincronizar(campos[1]);
+                }
+                return;
+            }
+            if (recibida <= emisor.ultimaSecuencia || emisor.pendientes.containsKey(recibida)) {
+                return;
+            }
+            if (recibida > emisor.ultimaSecuencia + 1) {
+                emisor.pendientes.put(recibida, cambio);
+                reordenados.increment();
+                if (emisor.huecoDesde == 0) {
+                    emisor.huecoDesde = ahora;
+                }
+                if (emisor.pendientes.size() > PENDIENTES_MAXIMOS) {
+                    declararHueco(campos[1], emisor);
+                }
+                return;
+            }
+            emisor.ultimaSecuencia = recibida;
+            entregar(cambio);
+            while (emisor.pendientes.containsKey(emisor.ultimaSecuencia + 1)) {
+                emisor.ultimaSecuencia++;
+                entregar(emisor.pendientes.remove(emisor.ultimaSecuencia));
+            }
+            emisor.huecoDesde = emisor.pendientes.isEmpty() ? 0 : ahora;
+        }
+    }
+
+    /**
+     * Da por perdidos los mensajes que faltan antes de los retenidos, entrega los retenidos en orden
+     * y resincroniza. Debe llamarse con el cerrojo del emisor.
+     */
+    private void declararHueco(String id, Emisor emisor) {
+        for (Map.Entry<Long, Cambio> pendiente : emisor.pendientes.entrySet()) {
+            perdidos.add(pendiente.getKey() - emisor.ultimaSecuencia - 1);
+            emisor.ultimaSecuencia = pendiente.getKey();
+            entregar(pendiente.getValue());
+        }
+        emisor.pendientes.clear();
+        emisor.huecoDesde = 0;
+        resincronizar(id);
+    }
+
+    private void entregar(Cambio cambio) {
+        if (cambio.tipo() != Cambio.Tipo.LATIDO) {
+            eventos.publishEvent(cambio);
+        }
+    }
+
+    /**
+     * Programa la recarga de las cachés en el hilo de resincronización. Si ya hay una programada que aún
+     * no ha empezado, esa misma lee de la base de datos los cambios perdidos y no se programa otra.
+     * Las cachés no se usan hasta que terminan todas las programadas.
+     */
+    private void resincronizar(String id) {
+        log.warn("Cambios del nodo {} no recibidos; resincronizando cachés", id);
+        if (!resincronizacionEncolada.compareAndSet(false, true)) {
+            return;
+        }
+        resincronizacionesPendientes.incrementAndGet();
+        try {
+            resincronizador.execute(() -> {
+                resincronizacionEncolada.set(false);
+                resincronizaciones.increment();
+                try {
+                    eventos.publishEvent(new Resincronizacion(id));
+                } catch (RuntimeException e) {
+                    log.warn("Error al resincronizar las cachés", e);
+                } finally {
+                    resincronizacionesPendientes.decrementAndGet();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Aplicación deteniéndose
+            resincronizacionEncolada.set(false);
+            resincronizacionesPendientes.decrementAndGet();
+        }
+    }
+
+    private static boolean esLocal(String host) {
+        return host.equals("localhost") || host.equals("127.0.0.1") || host.equals("::1");
+    }
+
+    /**
+     * Nodo configurado, con la dirección con la que figura en la lista, su última resolución
+     * y el momento en que se recibió de él el último mensaje.
+     */
+    private static final class Destino {
+        final String nombre;
+        final String host;
+        final int puerto;
+        volatile InetSocketAddress direccion;
+        volatile long ultimoContacto;
+        volatile boolean contactado;
+
+        Destino(String nombre, String host, int puerto) {
+            this.nombre = nombre;
+            this.host = host;
+            this.puerto = puerto;
+            this.direccion = new InetSocketAddress(host, puerto);
+        }
+    }
+
+    /**
+     * Estado de la secuencia de mensajes de un emisor: última secuencia entregada y mensajes retenidos
+     * que llegaron antes que alguno anterior.
+     */
+    private static final class Emisor {
+        volatile long ultimoContacto = System.nanoTime();
+        long ultimaSecuencia;
+        long huecoDesde;
+        final TreeMap<Long, Cambio> pendientes = new TreeMap<>();
+    }
+
+    /**
+     * Cambio confirmado en otro nodo, que las cachés locales deben aplicar.
+     *
+     * @param tipo         Tipo de cambio
+     * @param id           ID del libro, usuario o préstamo modificado
+     * @param libroId      ID del libro del préstamo (solo en préstamos)
+     * @param usuarioId    ID del usuario del préstamo (solo en préstamos)
+     * @param numeroCuenta Número de cuenta del usuario del préstamo (solo en préstamos y devoluciones)
+     */
+    public record Cambio(Tipo tipo, long id, long libroId, long usuarioId, String numeroCuenta) {
+
+        /**
+         * Tipo de cambio difundido entre nodos.
+         */
+        public enum Tipo {
+            /** Latido periódico, sin cambio asociado. */
+            LATIDO,
+            /** Libro creado o modificado. */
+            LIBRO,
+            /** Usuario creado o modificado. */
+            USUARIO,
+            /** Préstamo creado. */
+            PRESTAMO,
+            /** Préstamo devuelto. */
+            DEVOLUCION
+        }
+
+        /**
+         * @param libroId ID del libro creado o modificado
+         * @return Cambio de libro
+         */
+        public static Cambio libro(long libroId) {
+            return new Cambio(Tipo.LIBRO, libroId, libroId, 0, null);
+        }
+
+        /**
+         * @param usuarioId ID del usuario creado o modificado
+         * @return Cambio de usuario
+         */
+        public static Cambio usuario(long usuarioId) {
+            return new Cambio(Tipo.USUARIO, usuarioId, 0, usuarioId, null);
+        }
+
+        /**
+         * @param prestamoId   ID del préstamo creado
+         * @param libroId      ID del libro prestado
+         * @param usuarioId    ID del usuario
+         * @param numeroCuenta Número de cuenta del usuario
+         * @return Cambio de préstamo creado
+         */
+        public static Cambio prestamo(long prestamoId, long libroId, long usuarioId, String numeroCuenta) {
+            return new Cambio(Tipo.PRESTAMO, prestamoId, libroId, usuarioId, numeroCuenta);
+        }
+
+        /**
+         * @param prestamoId   ID del préstamo devuelto
+         * @param numeroCuenta Número de cuenta del usuario
+         * @return Cambio de préstamo devuelto
+         */
+        public static Cambio devolucion(long prestamoId, String numeroCuenta) {
+            return new Cambio(Tipo.DEVOLUCION, prestamoId, 0, 0, numeroCuenta);
+        }
+
+        static Cambio latido() {
+            return new Cambio(Tipo.LATIDO, 0, 0, 0, null);
+        }
+    }
+
+    /**
+     * Evento local que indica que no se recibieron algunos cambios de otro nodo: las cachés deben
+     * recargarse por completo desde la base de datos.
+     *
+     * @param nodo Nodo del que faltan cambios
+     */
+    public record Resincronizacion(String nodo) {
+    }
+}
@@ -0,0 +1,117 @@
+package com.biblios.biblionet.service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Agrupa consultas concurrentes sobre la misma clave en una sola ejecución ("single-flight").
+ * El primer hilo que pide una clave ejecuta la consulta; los hilos que piden la misma clave
+ * mientras está en curso esperan y reciben el mismo resultado, sin volver a consultar la base de datos.
+ * No guarda resultados: en cuanto la consulta termina, la siguiente petición vuelve a ejecutarse.
+ *
+ * @param <K> Tipo de la clave
+ * @param <V> Tipo del resultado
+ */
+public class CoalescedorConsultas<K, V> {
+
+    private final ConcurrentHashMap<K, CompletableFuture<V>> enCurso = new ConcurrentHashMap<>();
+    private final LongAdder ejecutadas = new LongAdder();
+    private final LongAdder coalescidas = new LongAdder();
+
+    /**
+     * Obtiene el resultado para la clave dada, ejecutando la consulta solo si no hay otra en curso para ella.
+     *
+     * @param clave    Clave de la consulta
+     * @param consulta Función que consulta la base de datos
+     * @return Resultado de la consulta
+     */
+    public V obtener(K clave, Function<K, V> consulta) {
+        CompletableFuture<V> propia = new CompletableFuture<>();
+        CompletableFuture<V> existente = enCurso.putIfAbsent(clave, propia);
+        if (existente != null) {
+            coalescidas.increment();
+            return esperar(existente);
+        }
+
+        ejecutadas.increment();
+        try {
+            V resultado = consulta.apply(clave);
+            propia.complete(resultado);
+            return resultado;
+        } catch (RuntimeException | Error e) {
+            propia.completeExceptionally(e);
+            throw e;
+        } finally {
+            enCurso.remove(clave, propia);
+        }
+    }
+
+    /**
+     * Devuelve los contadores de consultas ejecutadas y coalescidas.
+     *
+     * @return Estadísticas del coalescedor
+     */
+    public Estadisticas estadisticas() {
+        return new Estadisticas(ejecutadas.sum(), coalescidas.sum(), enCurso.size());
+    }
+
+    private static <V> V esperar(CompletableFuture<V> futuro) {
+        try {
+            return futuro.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException causa) {
+                throw causa;
+            }
+            if (e.getCause() instanceof Error causa) {
+                throw causa;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Contadores de un coalescedor de consultas.
+     */
+    public static class Estadisticas {
+        private final long ejecutadas;
+        private final long coalescidas;
+        private final int enCurso;
+
+        /**
+         * Constructor con todos los campos.
+         *
+         * @param ejecutadas  Consultas que llegaron a la base de datos
+         * @param coalescidas Peticiones resueltas esperando una consulta ya en curso
+         * @param enCurso     Claves con una consulta en curso en este momento
+         */
+        public Estadisticas(long ejecutadas, long coalescidas, int enCurso) {
+            this.ejecutadas = ejecutadas;
+            this.coalescidas = coalescidas;
+            this.enCurso = enCurso;
+        }
+
+        /**
+         * @return Consultas que llegaron a la base de datos
+         */
+        public long getEjecutadas() {
+            return ejecutadas;
+        }
+
+        /**
+         * @return Peticiones resueltas esperando una consulta ya en curso
+         */
+        public long getCoalescidas() {
+            return coalescidas;
+        }
+
+        /**
+         * @return Claves con una consulta en curso en este momento
+         */
+        public int getEnCurso() {
+            return enCurso;
+        }
+    }
+}
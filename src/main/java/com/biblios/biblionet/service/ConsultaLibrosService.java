@@ -0,0 +1,79 @@
+package com.biblios.biblionet.service;
+
+import com.biblios.biblionet.model.Libro;
+import com.biblios.biblionet.repository.ExistenciaRepository;
+import com.biblios.biblionet.repository.LibroRepository;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Servicio de consultas puntuales del catálogo que agrupa las peticiones concurrentes
+ * para la misma clave (ID, ISBN o disponibilidad de un libro) en una sola consulta a la base de datos.
+ */
+@Service
+public class ConsultaLibrosService {
+
+    private final LibroRepository libroRepo;
+    private final ExistenciaRepository existenciaRepo;
+
+    private final CoalescedorConsultas<Long, Optional<Libro>> porId = new CoalescedorConsultas<>();
+    private final CoalescedorConsultas<String, Optional<Libro>> porIsbn = new CoalescedorConsultas<>();
+    private final CoalescedorConsultas<Long, Boolean> disponibilidad = new CoalescedorConsultas<>();
+
+    /**
+     * Constructor con inyección de dependencias.
+     *
+     * @param libroRepo      Repositorio de libros
+     * @param existenciaRepo Repositorio de existencias por sucursal
+     */
+    public ConsultaLibrosService(LibroRepository libroRepo, ExistenciaRepository existenciaRepo) {
+        this.libroRepo = libroRepo;
+        this.existenciaRepo = existenciaRepo;
+    }
+
+    /**
+     * Busca un libro por su ID.
+     *
+     * @param id ID del libro
+     * @return Un {@link Optional} con el libro si existe
+     */
+    public Optional<Libro> buscarPorId(Long id) {
+        return porId.obtener(id, libroRepo::findById);
+    }
+
+    /**
+     * Busca un libro por su ISBN.
+     *
+     * @param isbn Código ISBN del libro
+     * @return Un {@link Optional} con el libro si existe
+     */
+    public Optional<Libro> buscarPorIsbn(String isbn) {
+        return porIsbn.obtener(isbn, libroRepo::findByIsbn);
+    }
+
+    /**
+     * Verifica si alguna sucursal tiene ejemplares disponibles del libro.
+     *
+     * @param id ID del libro
+     * @return true si el libro está disponible
+     */
+    public boolean isDisponible(Long id) {
+        return disponibilidad.obtener(id, libroId -> existenciaRepo.existsByLibroIdAndDisponiblesGreaterThan(libroId, 0));
+    }
+
+    /**
+     * Devuelve los contadores de consultas ejecutadas y coalescidas de cada tipo de búsqueda.
+     *
+     * @return Estadísticas por tipo de búsqueda
+     */
+    public Map<String, CoalescedorConsultas.Estadisticas> estadisticas() {
+        Map<String, CoalescedorConsultas.Estadisticas> estadisticas = new LinkedHashMap<>();
+        estadisticas.put("porId", porId.estadisticas());
+        estadisticas.put("porIsbn", porIsbn.estadisticas());
+        estadisticas.put("disponibilidad", disponibilidad.estadisticas());
+        return estadisticas;
+    }
+}
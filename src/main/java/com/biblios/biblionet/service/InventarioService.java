@@ -0,0 +1,243 @@
+package com.biblios.biblionet.service;
+
+import com.biblios.biblionet.model.Existencia;
+import com.biblios.biblionet.model.Libro;
+import com.biblios.biblionet.repository.ExistenciaRepository;
+import com.biblios.biblionet.repository.LibroRepository;
+import com.biblios.biblionet.repository.PrestamoRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Servicio que mantiene los contadores de ejemplares por libro y sucursal.
+ * Prestar y devolver ejemplares se hace con sentencias UPDATE condicionales, por lo que
+ * las consultas de disponibilidad leen un único registro en lugar de contar préstamos.
+ * <p>
+ * Todo libro tiene al menos un registro de existencias: al crearlo se le registra un ejemplar en la
+ * sucursal por defecto, y al arrancar se registra también para los libros creados antes de que hubiera
+ * existencias por sucursal, contando como prestados los ejemplares de sus préstamos activos.
+ */
+@Service
+public class InventarioService {
+
+    private static final Logger log = LoggerFactory.getLogger(InventarioService.class);
+
+    private static final int LOTE_INICIAL = 1000;
+
+    private final ExistenciaRepository existenciaRepo;
+    private final LibroRepository libroRepo;
+    private final PrestamoRepository prestamoRepo;
+    private final TransactionTemplate transacciones;
+    private final String sucursalPorDefecto;
+
+    /**
+     * Constructor con inyección de dependencias.
+     *
+     * @param existenciaRepo     Repositorio de existencias
+     * @param libroRepo          Repositorio de libros
+     * @param prestamoRepo       Repositorio de préstamos
+     * @param transacciones      Plantilla para registrar ejemplares en su propia transacción, reintentable
+     * @param sucursalPorDefecto Sucursal de los libros sin existencias y de los préstamos que no indican sucursal
+     */
+    public InventarioService(ExistenciaRepository existenciaRepo,
+                             LibroRepository libroRepo,
+                             PrestamoRepository prestamoRepo,
+                             TransactionTemplate transacciones,
+                             @Value("${biblionet.existencias.sucursal-por-defecto:CENTRAL}") String sucursalPorDefecto) {
+        this.existenciaRepo = existenciaRepo;
+        this.libroRepo = libroRepo;
+        this.prestamoRepo = prestamoRepo;
+        this.transacciones = transacciones;
+        this.sucursalPorDefecto = sucursalPorDefecto;
+    }
+
+    /**
+     * Obtiene la sucursal usada para los libros sin existencias y los préstamos que no indican sucursal.
+     *
+     * @return Código de la sucursal por defecto
+     */
+    public String getSucursalPorDefecto() {
+        return sucursalPorDefecto;
+    }
+
+    /**
+     * Registra un ejemplar en la sucursal por defecto, a cada libro que no tenga existencias en ninguna sucursal,
+     * para que los catálogos anteriores a las existencias por sucursal sigan pudiéndose prestar.
+     * Si el libro tiene préstamos activos, se registran al menos tantos ejemplares como préstamos, todos prestados,
+     * y esos préstamos pasan a la sucursal por defecto para que al devolverlos el ejemplar vuelva a estar disponible.
+     * Se procesa por lotes en transacciones separadas; si otro nodo registra a la vez los mismos libros,
+     * el lote que choca con la restricción de unicidad se vuelve a leer sin esos libros.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void registrarEjemplaresIniciales() {
+        int registrados = 0;
+        List<Long> anterior = List.of();
+        while (true) {
+            List<ExistenciaRepository.LibroSinExistencias> lote =
+                    existenciaRepo.findBooksWithoutCopies(PageRequest.of(0, LOTE_INICIAL));
+            if (lote.isEmpty()) {
+                break;
+            }
+            List<Long> ids = lote.stream().map(ExistenciaRepository.LibroSinExistencias::getLibroId).toList();
+            try {
+                transacciones.executeWithoutResult(estado -> registrarIniciales(lote, ids));
+                registrados += lote.size();
+            } catch (DataIntegrityViolationException e) {
+                if (ids.equals(anterior)) {
+                    throw e;
+                }
+            }
+            anterior = ids;
+        }
+        if (registrados > 0) {
+            log.info("Registrado un ejemplar en la sucursal {} para {} libros sin existencias",
+                    sucursalPorDefecto, registrados);
+        }
+    }
+
+    private void registrarIniciales(List<ExistenciaRepository.LibroSinExistencias> lote, List<Long> ids) {
+        Map<Long, Libro> libros = libroRepo.findAllById(ids).stream()
+                .collect(Collectors.toMap(Libro::getId, Function.identity()));
+        List<Existencia> nuevas = new ArrayList<>(lote.size());
+        for (ExistenciaRepository.LibroSinExistencias sinExistencias : lote) {
+            Libro libro = libros.get(sinExistencias.getLibroId());
+            if (libro == null) {
+                continue; // eliminado mientras tanto
+            }
+            int prestados = (int) sinExistencias.getPrestados();
+            nuevas.add(new Existencia(libro, sucursalPorDefecto, Math.max(1, prestados), prestados));
+        }
+        existenciaRepo.saveAllAndFlush(nuevas);
+        prestamoRepo.assignBranchToActiveLoans(ids, sucursalPorDefecto);
+    }
+
+    /**
+     * Registra un ejemplar de un libro recién creado en la sucursal por defecto.
+     *
+     * @param libro Libro creado
+     * @return Existencias del libro en la sucursal por defecto
+     */
+    public Existencia registrarEjemplarInicial(Libro libro) {
+        return registrarEjemplares(libro, sucursalPorDefecto, 1);
+    }
+
+    /**
+     * Añade (o retira, con cantidad negativa) ejemplares de un libro en una sucursal,
+     * creando el registro de existencias si la sucursal aún no tenía ejemplares del libro.
+     * Si dos peticiones crean a la vez el registro de la misma sucursal, la que choca con la restricción
+     * de unicidad se repite en una transacción nueva, en la que ya solo suma los ejemplares.
+     *
+     * @param libro    Libro de los ejemplares
+     * @param sucursal Código de la sucursal
+     * @param cantidad Ejemplares a añadir o retirar
+     * @return Existencias actualizadas
+     */
+    public Existencia registrarEjemplares(Libro libro, String sucursal, int cantidad) {
+        try {
+            return transacciones.execute(estado -> aplicarEjemplares(libro, sucursal, cantidad));
+        } catch (DataIntegrityViolationException e) {
+            return transacciones.execute(estado -> aplicarEjemplares(libro, sucursal, cantidad));
+        }
+    }
+
+    private Existencia aplicarEjemplares(Libro libro, String sucursal, int cantidad) {
+        if (existenciaRepo.addCopies(libro.getId(), sucursal, cantidad) == 0) {
+            if (existenciaRepo.findByLibroIdAndSucursal(libro.getId(), sucursal).isPresent()) {
+                throw new ResponseStatusException(HttpStatus.CONFLICT,
+                        "No hay suficientes ejemplares disponibles para retirar " + (-cantidad));
+            }
+            if (cantidad < 0) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                        "La sucursal " + sucursal + " no tiene ejemplares del libro");
+            }
+            existenciaRepo.saveAndFlush(new Existencia(libro, sucursal, cantidad));
+        }
+        return existenciaRepo.findByLibroIdAndSucursal(libro.getId(), sucursal).orElseThrow();
+    }
+
+    /**
+     * Descuenta un ejemplar disponible de la sucursal al crear un préstamo.
+     * Debe llamarse dentro de la transacción que guarda el préstamo.
+     *
+     * @param libroId  ID del libro
+     * @param sucursal Código de la sucursal
+     * @throws ResponseStatusException 409 si no quedan ejemplares disponibles en la sucursal
+     */
+    public void prestarEjemplar(Long libroId, String sucursal) {
+        if (existenciaRepo.takeCopy(libroId, sucursal) == 0) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT,
+                    "No hay ejemplares disponibles del libro " + libroId + " en la sucursal " + sucursal);
+        }
+    }
+
+    /**
+     * Devuelve un ejemplar a los disponibles de la sucursal al cerrar un préstamo.
+     *
+     * @param libroId  ID del libro
+     * @param sucursal Código de la sucursal, o null si el préstamo no tenía sucursal
+     */
+    public void devolverEjemplar(Long libroId, String sucursal) {
+        if (sucursal != null) {
+            existenciaRepo.releaseCopy(libroId, sucursal);
+        }
+    }
+
+    /**
+     * Devuelve a los disponibles los ejemplares de un lote de préstamos que se están cerrando.
+     *
+     * @param prestamoIds IDs de los préstamos cerrados
+     */
+    public void devolverEjemplares(Collection<Long> prestamoIds) {
+        if (!prestamoIds.isEmpty()) {
+            existenciaRepo.releaseCopiesOfLoans(prestamoIds);
+        }
+    }
+
+    /**
+     * Obtiene las existencias de un libro en una sucursal.
+     *
+     * @param libroId  ID del libro
+     * @param sucursal Código de la sucursal
+     * @return Un {@link Optional} con las existencias, si las hay
+     */
+    public Optional<Existencia> buscar(Long libroId, String sucursal) {
+        return existenciaRepo.findByLibroIdAndSucursal(libroId, sucursal);
+    }
+
+    /**
+     * Obtiene las existencias de un libro en todas las sucursales.
+     *
+     * @param libroId ID del libro
+     * @return Lista de existencias por sucursal
+     */
+    public List<Existencia> buscarPorLibro(Long libroId) {
+        return existenciaRepo.findByLibroId(libroId);
+    }
+
+    /**
+     * Cuenta los ejemplares prestados de un libro en todas las sucursales.
+     *
+     * @param libroId ID del libro
+     * @return Número de ejemplares prestados
+     */
+    public long contarPrestados(Long libroId) {
+        return existenciaRepo.countLoanedCopies(libroId);
+    }
+}
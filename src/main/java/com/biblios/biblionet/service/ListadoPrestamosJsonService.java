@@ -0,0 +1,259 @@
+package com.biblios.biblionet.service;
+
+import com.biblios.biblionet.model.Prestamo;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Escribe listados de préstamos en JSON directamente desde las filas de la consulta al flujo de salida.
+ * <p>
+ * Serializar una {@code List<Prestamo>} obliga a cargar las entidades, con su libro y su usuario, en el
+ * contexto de persistencia y a que Jackson las recorra por reflexión. Aquí una única consulta JDBC con los
+ * dos JOIN devuelve solo las columnas necesarias, y cada fila se escribe con un {@link JsonGenerator} en
+ * cuanto se lee, sin crear entidades ni listas intermedias. El JSON es el mismo que produce Jackson para
+ * {@link Prestamo}: mismos campos, en el mismo orden, con las fechas en formato ISO y los nulos incluidos.
+ * <p>
+ * Mientras se escribe, el cursor y su conexión siguen abiertos al ritmo al que lee el cliente. Por eso
+ * el número de listados simultáneos está acotado ({@code biblionet.listados.concurrentes}) y, si se
+ * alcanza, se responde 503 en lugar de esperar; {@code spring.mvc.async.request-timeout} fija además
+ * el tiempo máximo que puede durar cada uno. El hueco se libera al terminar la escritura y, por si esta
+ * no llega a empezar (tarea rechazada, tiempo agotado antes de ejecutarse o error), también al completarse
+ * la petición asíncrona, mediante {@link #liberadorAsincrono()}.
+ */
+@Service
+public class ListadoPrestamosJsonService {
+
+    private static final String COLUMNAS = "p.id, p.fecha_prestamo, p.fecha_devolucion, p.sucursal, "
+            + "l.id, l.titulo, l.autor, l.isbn, l.genero, l.fecha_publicacion, "
+            + "u.id, u.nombre, u.numero_cuenta";
+    private static final String TODOS = consulta("prestamos", "");
+    private static final String ATRIBUTO_HUECO = ListadoPrestamosJsonService.class.getName() + ".hueco";
+
+    private final JdbcTemplate jdbc;
+    private final ObjectMapper objectMapper;
+    private final Semaphore enCurso;
+
+    /**
+     * Constructor con inyección de dependencias.
+     *
+     * @param dataSource   Origen de datos de la aplicación
+     * @param objectMapper Configuración de Jackson de la aplicación, de la que se toma la fábrica de generadores
+     * @param tamanoFetch  Filas que el driver trae en cada viaje a la base de datos
+     * @param concurrentes Listados que se pueden escribir a la vez, cada uno con una conexión ocupada
+     */
+    public ListadoPrestamosJsonService(DataSource dataSource, ObjectMapper objectMapper,
+                                       @Value("${biblionet.listados.tamano-fetch:1000}") int tamanoFetch,
+                                       @Value("${biblionet.listados.concurrentes:3}") int concurrentes) {
+        this.jdbc = new JdbcTemplate(dataSource);
+        this.jdbc.setFetchSize(tamanoFetch);
+        this.objectMapper = objectMapper;
+        this.enCurso = new Semaphore(concurrentes);
+    }
+
+    /**
+     * Ocupa uno de los listados simultáneos permitidos y devuelve un cuerpo de respuesta que lo libera
+     * al terminar de escribir. Debe llamarse en el hilo de la petición, antes de devolver la respuesta:
+     * el hueco se guarda también en la petición para que {@link #liberadorAsincrono()} lo libere si la
+     * escritura no llega a ejecutarse.
+     *
+     * @param cuerpo Escritura del listado
+     * @return Cuerpo de respuesta que escribe el listado y libera el hueco
+     * @throws ResponseStatusException 503 si ya se están escribiendo el máximo de listados
+     */
+    public StreamingResponseBody limitar(StreamingResponseBody cuerpo) {
+        if (!enCurso.tryAcquire()) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
+                    "Demasiados listados en curso; inténtelo de nuevo en unos segundos");
+        }
+        Hueco hueco = new Hueco();
+        RequestAttributes peticion = RequestContextHolder.getRequestAttributes();
+        if (peticion != null) {
+            peticion.setAttribute(ATRIBUTO_HUECO, hueco, RequestAttributes.SCOPE_REQUEST);
+        }
+        return salida -> {
+            try {
+                cuerpo.writeTo(salida);
+            } finally {
+                hueco.liberar();
+            }
+        };
+    }
+
+    /**
+     * Devuelve el interceptor de procesamiento asíncrono que libera el hueco del listado al completarse
+     * la petición, termine como termine. Liberar un hueco ya liberado no tiene efecto.
+     *
+     * @return Interceptor a registrar en la configuración asíncrona de Spring MVC
+     */
+    public CallableProcessingInterceptor liberadorAsincrono() {
+        return new CallableProcessingInterceptor() {
+            @Override
+            public <T> void afterCompletion(NativeWebRequest peticion, Callable<T> tarea) {
+                if (peticion.getAttribute(ATRIBUTO_HUECO, RequestAttributes.SCOPE_REQUEST) instanceof Hueco hueco) {
+                    hueco.liberar();
+                }
+            }
+        };
+    }
+
+    /**
+     * Escribe todos los préstamos registrados.
+     *
+     * @param salida Flujo donde escribir el array JSON; no se cierra
+     * @throws IOException si falla la escritura
+     */
+    public void escribirTodos(OutputStream salida) throws IOException {
+        escribir(salida, TODOS);
+    }
+
+    /**
+     * Escribe los préstamos pendientes de devolución.
+     *
+     * @param salida Flujo donde escribir el array JSON; no se cierra
+     * @throws IOException si falla la escritura
+     */
+    public void escribirPendientes(OutputStream salida) throws IOException {
+        escribir(salida, TODOS + " WHERE p.fecha_devolucion IS NULL");
+    }
+
+    /**
+     * Escribe los préstamos activos de un usuario por su número de cuenta.
+     *
+     * @param numeroCuenta Número de cuenta del usuario
+     * @param salida       Flujo donde escribir el array JSON; no se cierra
+     * @throws IOException si falla la escritura
+     */
+    public void escribirActivosPorCuenta(String numeroCuenta, OutputStream salida) throws IOException {
+        escribir(salida, TODOS + " WHERE u.numero_cuenta = ? AND p.fecha_devolucion IS NULL", numeroCuenta);
+    }
+
+    /**
+     * Escribe los préstamos de un libro, incluyendo opcionalmente los archivados ordenados por fecha de préstamo.
+     *
+     * @param libroId   ID del libro
+     * @param historial true para incluir los préstamos archivados
+     * @param salida    Flujo donde escribir el array JSON; no se cierra
+     * @throws IOException si falla la escritura
+     */
+    public void escribirPorLibro(Long libroId, boolean historial, OutputStream salida) throws IOException {
+        escribirConHistorial(salida, "p.libro_id = ?", libroId, historial);
+    }
+
+    /**
+     * Escribe los préstamos de un usuario, incluyendo opcionalmente los archivados ordenados por fecha de préstamo.
+     *
+     * @param usuarioId ID del usuario
+     * @param historial true para incluir los préstamos archivados
+     * @param salida    Flujo donde escribir el array JSON; no se cierra
+     * @throws IOException si falla la escritura
+     */
+    public void escribirPorUsuario(Long usuarioId, boolean historial, OutputStream salida) throws IOException {
+        escribirConHistorial(salida, "p.usuario_id = ?", usuarioId, historial);
+    }
+
+    private void escribirConHistorial(OutputStream salida, String condicion, Long id, boolean historial)
+            throws IOException {
+        if (!historial) {
+            escribir(salida, TODOS + " WHERE " + condicion, id);
+            return;
+        }
+        // Por fecha de préstamo y, a igual fecha, primero los archivados.
+        String sql = consulta("prestamos_historico", ", 0") + " WHERE " + condicion
+                + " UNION ALL " + consulta("prestamos", ", 1") + " WHERE " + condicion
+                + " ORDER BY 2, 14";
+        escribir(salida, sql, id, id);
+    }
+
+    private static String consulta(String tabla, String columnasExtra) {
+        return "SELECT " + COLUMNAS + columnasExtra + " FROM " + tabla + " p"
+                + " JOIN libros l ON l.id = p.libro_id"
+                + " JOIN usuarios u ON u.id = p.usuario_id";
+    }
+
+    private void escribir(OutputStream salida, String sql, Object... parametros) throws IOException {
+        try (JsonGenerator json = objectMapper.getFactory().createGenerator(salida, JsonEncoding.UTF8)) {
+            json.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            // Si la consulta falla a mitad, el array queda sin cerrar y el cliente detecta la respuesta incompleta.
+            json.disable(JsonGenerator.Feature.AUTO_CLOSE_JSON_CONTENT);
+            json.writeStartArray();
+            jdbc.query(sql, fila -> {
+                try {
+                    escribirFila(json, fila);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, parametros);
+            json.writeEndArray();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static void escribirFila(JsonGenerator json, ResultSet fila) throws IOException, SQLException {
+        json.writeStartObject();
+        json.writeNumberField("id", fila.getLong(1));
+
+        json.writeObjectFieldStart("libro");
+        json.writeNumberField("id", fila.getLong(5));
+        json.writeStringField("titulo", fila.getString(6));
+        json.writeStringField("autor", fila.getString(7));
+        json.writeStringField("isbn", fila.getString(8));
+        json.writeStringField("genero", fila.getString(9));
+        escribirFecha(json, "fechaPublicacion", fila.getObject(10, LocalDate.class));
+        json.writeEndObject();
+
+        json.writeObjectFieldStart("usuario");
+        json.writeNumberField("id", fila.getLong(11));
+        json.writeStringField("nombre", fila.getString(12));
+        json.writeStringField("numeroCuenta", fila.getString(13));
+        json.writeEndObject();
+
+        escribirFecha(json, "fechaPrestamo", fila.getObject(2, LocalDate.class));
+        escribirFecha(json, "fechaDevolucion", fila.getObject(3, LocalDate.class));
+        json.writeStringField("sucursal", fila.getString(4));
+        json.writeEndObject();
+    }
+
+    /**
+     * Hueco ocupado por un listado, que se devuelve al semáforo una sola vez.
+     */
+    private final class Hueco {
+        private final AtomicBoolean liberado = new AtomicBoolean();
+
+        void liberar() {
+            if (liberado.compareAndSet(false, true)) {
+                enCurso.release();
+            }
+        }
+    }
+
+    private static void escribirFecha(JsonGenerator json, String campo, LocalDate fecha) throws IOException {
+        if (fecha == null) {
+            json.writeNullField(campo);
+        } else {
+            json.writeStringField(campo, fecha.toString());
+        }
+    }
+}
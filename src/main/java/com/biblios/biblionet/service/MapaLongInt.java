@@ -0,0 +1,178 @@
+package com.biblios.biblionet.service;
+
+/**
+ * Mapa de claves long a valores int con direccionamiento abierto (sondeo lineal), sin objetos
+ * por entrada. La clave 0 se reserva como marca de ranura vacía, por lo que no se admite como clave.
+ * <p>
+ * No es seguro para uso concurrente.
+ */
+class MapaLongInt {
+
+    /**
+     * Operación aplicada a cada entrada del mapa.
+     */
+    @FunctionalInterface
+    interface Visitante {
+        void visitar(long clave, int valor);
+    }
+
+    private long[] claves;
+    private int[] valores;
+    private int tamano;
+
+    MapaLongInt(int capacidadInicial) {
+        int capacidad = Integer.highestOneBit(Math.max(4, capacidadInicial) * 2 - 1);
+        claves = new long[capacidad];
+        valores = new int[capacidad];
+    }
+
+    /**
+     * @param clave Clave a buscar
+     * @return Valor asociado, o 0 si la clave no está
+     */
+    int get(long clave) {
+        int ranura = buscar(clave);
+        return ranura >= 0 ? valores[ranura] : 0;
+    }
+
+    /**
+     * @param clave Clave a buscar
+     * @return true si la clave está en el mapa
+     */
+    boolean contiene(long clave) {
+        return buscar(clave) >= 0;
+    }
+
+    /**
+     * Suma delta al valor de la clave, insertándola con valor delta si no existía.
+     *
+     * @param clave Clave (distinta de 0)
+     * @param delta Cantidad a sumar
+     * @return Nuevo valor
+     */
+    int sumar(long clave, int delta) {
+        if (clave == 0) {
+            throw new IllegalArgumentException("La clave 0 está reservada");
+        }
+        int mascara = claves.length - 1;
+        int ranura = dispersar(clave) & mascara;
+        while (claves[ranura] != 0) {
+            if (claves[ranura] == clave) {
+                valores[ranura] += delta;
+                return valores[ranura];
+            }
+            ranura = (ranura + 1) & mascara;
+        }
+        claves[ranura] = clave;
+        valores[ranura] = delta;
+        if (++tamano * 2 > claves.length) {
+            redimensionar(claves.length * 2);
+        }
+        return delta;
+    }
+
+    /**
+     * Elimina una clave, recolocando las entradas siguientes del mismo grupo de sondeo.
+     *
+     * @param clave Clave a eliminar
+     */
+    void eliminar(long clave) {
+        int ranura = buscar(clave);
+        if (ranura < 0) {
+            return;
+        }
+        int mascara = claves.length - 1;
+        int hueco = ranura;
+        int siguiente = (hueco + 1) & mascara;
+        while (claves[siguiente] != 0) {
+            int ideal = dispersar(claves[siguiente]) & mascara;
+            // La entrada puede ocupar el hueco si su ranura ideal no está entre el hueco y su posición actual.
+            if (((siguiente - ideal) & mascara) >= ((siguiente - hueco) & mascara)) {
+                claves[hueco] = claves[siguiente];
+                valores[hueco] = valores[siguiente];
+                hueco = siguiente;
+            }
+            siguiente = (siguiente + 1) & mascara;
+        }
+        claves[hueco] = 0;
+        valores[hueco] = 0;
+        tamano--;
+    }
+
+    /**
+     * @return Número de entradas
+     */
+    int tamano() {
+        return tamano;
+    }
+
+    /**
+     * @return Bytes aproximados ocupados por los arreglos del mapa
+     */
+    long bytesEstimados() {
+        return 16L + 2 * 16 + (long) claves.length * (Long.BYTES + Integer.BYTES);
+    }
+
+    /**
+     * Recorre todas las entradas del mapa.
+     *
+     * @param visitante Operación a aplicar a cada entrada
+     */
+    void recorrer(Visitante visitante) {
+        for (int i = 0; i < claves.length; i++) {
+            if (claves[i] != 0) {
+                visitante.visitar(claves[i], valores[i]);
+            }
+        }
+    }
+
+    /**
+     * Devuelve la clave con el menor valor, o 0 si el mapa está vacío.
+     *
+     * @return Clave con el menor valor
+     */
+    long claveMinima() {
+        long minima = 0;
+        int valorMinimo = Integer.MAX_VALUE;
+        for (int i = 0; i < claves.length; i++) {
+            if (claves[i] != 0 && valores[i] < valorMinimo) {
+                minima = claves[i];
+                valorMinimo = valores[i];
+            }
+        }
+        return minima;
+    }
+
+    private int buscar(long clave) {
+        if (clave == 0) {
+            return -1;
+        }
+        int mascara = claves.length - 1;
+        int ranura = dispersar(clave) & mascara;
+        while (claves[ranura] != 0) {
+            if (claves[ranura] == clave) {
+                return ranura;
+            }
+            ranura = (ranura + 1) & mascara;
+        }
+        return -1;
+    }
+
+    private void redimensionar(int capacidad) {
+        long[] clavesAnteriores = claves;
+        int[] valoresAnteriores = valores;
+        claves = new long[capacidad];
+        valores = new int[capacidad];
+        tamano = 0;
+        for (int i = 0; i < clavesAnteriores.length; i++) {
+            if (clavesAnteriores[i] != 0) {
+                sumar(clavesAnteriores[i], valoresAnteriores[i]);
+            }
+        }
+    }
+
+    private static int dispersar(long clave) {
+        long h = clave * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,126 @@
+package com.biblios.biblionet.service;
+
+import java.util.function.Consumer;
+import java.util.function.LongFunction;
+
+/**
+ * Mapa de claves long a objetos con direccionamiento abierto (sondeo lineal), que evita crear un
+ * objeto {@link Long} y una entrada por cada clave. La clave 0 se reserva como marca de ranura vacía.
+ * No admite eliminar claves.
+ * <p>
+ * No es seguro para uso concurrente.
+ *
+ * @param <V> Tipo de los valores
+ */
+class MapaLongObjeto<V> {
+
+    private long[] claves;
+    private Object[] valores;
+    private int tamano;
+
+    MapaLongObjeto(int capacidadInicial) {
+        int capacidad = Integer.highestOneBit(Math.max(4, capacidadInicial) * 2 - 1);
+        claves = new long[capacidad];
+        valores = new Object[capacidad];
+    }
+
+    /**
+     * @param clave Clave a buscar
+     * @return Valor asociado, o null si la clave no está
+     */
+    @SuppressWarnings("unchecked")
+    V get(long clave) {
+        if (clave == 0) {
+            return null;
+        }
+        int mascara = claves.length - 1;
+        int ranura = dispersar(clave) & mascara;
+        while (claves[ranura] != 0) {
+            if (claves[ranura] == clave) {
+                return (V) valores[ranura];
+            }
+            ranura = (ranura + 1) & mascara;
+        }
+        return null;
+    }
+
+    /**
+     * Devuelve el valor de la clave, creándolo con la función dada si no existía.
+     *
+     * @param clave   Clave (distinta de 0)
+     * @param creador Función que crea el valor
+     * @return Valor asociado a la clave
+     */
+    @SuppressWarnings("unchecked")
+    V obtenerOCrear(long clave, LongFunction<V> creador) {
+        if (clave == 0) {
+            throw new IllegalArgumentException("La clave 0 está reservada");
+        }
+        int mascara = claves.length - 1;
+        int ranura = dispersar(clave) & mascara;
+        while (claves[ranura] != 0) {
+            if (claves[ranura] == clave) {
+                return (V) valores[ranura];
+            }
+            ranura = (ranura + 1) & mascara;
+        }
+        V valor = creador.apply(clave);
+        claves[ranura] = clave;
+        valores[ranura] = valor;
+        if (++tamano * 2 > claves.length) {
+            redimensionar(claves.length * 2);
+        }
+        return valor;
+    }
+
+    /**
+     * @return Número de entradas
+     */
+    int tamano() {
+        return tamano;
+    }
+
+    /**
+     * @return Bytes aproximados ocupados por los arreglos del mapa (sin contar los valores)
+     */
+    long bytesEstimados() {
+        return 16L + 2 * 16 + (long) claves.length * (Long.BYTES + 4);
+    }
+
+    /**
+     * Recorre todos los valores del mapa.
+     *
+     * @param visitante Operación a aplicar a cada valor
+     */
+    @SuppressWarnings("unchecked")
+    void recorrerValores(Consumer<V> visitante) {
+        for (int i = 0; i < claves.length; i++) {
+            if (claves[i] != 0) {
+                visitante.accept((V) valores[i]);
+            }
+        }
+    }
+
+    private void redimensionar(int capacidad) {
+        long[] clavesAnteriores = claves;
+        Object[] valoresAnteriores = valores;
+        claves = new long[capacidad];
+        valores = new Object[capacidad];
+        int mascara = capacidad - 1;
+        for (int i = 0; i < clavesAnteriores.length; i++) {
+            if (clavesAnteriores[i] != 0) {
+                int ranura = dispersar(clavesAnteriores[i]) & mascara;
+                while (claves[ranura] != 0) {
+                    ranura = (ranura + 1) & mascara;
+                }
+                claves[ranura] = clavesAnteriores[i];
+                valores[ranura] = valoresAnteriores[i];
+            }
+        }
+    }
+
+    private static int dispersar(long clave) {
+        long h = clave * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,486 @@
+package com.biblios.biblionet.service;
+
+import com.biblios.biblionet.repository.PrestamoRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+
+/**
+ * Vista en memoria de los préstamos activos de cada usuario (número de cuenta → IDs de préstamo y de libro).
+ * <p>
+ * Se carga al arrancar y se actualiza con cada préstamo y devolución cuando su transacción se confirma,
+ * de modo que la comprobación del límite de préstamos por usuario y la consulta de "mis préstamos" no
+ * tocan la base de datos. Una tarea periódica la compara con la tabla de préstamos y corrige las
+ * diferencias (por ejemplo, cambios hechos fuera de la aplicación); las entradas modificadas mientras se
+ * leía la tabla no se tocan, para no deshacer cambios más recientes que la lectura.
+ * <p>
+ * Los préstamos y devoluciones de otros nodos llegan como eventos de {@link ClusterService}; mientras el
+ * cluster no garantiza haberlos recibido todos, las consultas van a la base de datos.
+ */
+@Service
+public class PrestamosActivosService {
+
+    private static final Logger log = LoggerFactory.getLogger(PrestamosActivosService.class);
+    private static final Activos VACIO = new Activos(new long[0], new long[0], 0, 0);
+
+    private final PrestamoRepository prestamoRepo;
+    private final ClusterService cluster;
+    private final int limitePorUsuario;
+
+    private final ConcurrentHashMap<String, Activos> porCuenta = new ConcurrentHashMap<>();
+    private final AtomicLong version = new AtomicLong();
+    private volatile boolean cargado;
+
+    private final LongAdder reconciliaciones = new LongAdder();
+    private final LongAdder discrepanciasTotales = new LongAdder();
+    private volatile int discrepanciasUltima;
+
+    /**
+     * Constructor con inyección de dependencias.
+     *
+     * @param prestamoRepo     Repositorio de préstamos
+     * @param cluster          Coordinación con los demás nodos
+     * @param limitePorUsuario Préstamos activos máximos por usuario (0 para no limitar)
+     */
+    public PrestamosActivosService(PrestamoRepository prestamoRepo,
+                                   ClusterService cluster,
+                                   @Value("${biblionet.prestamos.limite-por-usuario:5}") int limitePorUsuario) {
+        this.prestamoRepo = prestamoRepo;
+        this.cluster = cluster;
+        this.limitePorUsuario = limitePorUsuario;
+    }
+
+    /**
+     * Carga la vista al arrancar la aplicación. Hasta entonces, las consultas van a la base de datos.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void cargar() {
+        reconciliar();
+    }
+
+    /**
+     * Compara la vista con la tabla de préstamos y corrige las cuentas que no coinciden.
+     */
+    @Scheduled(fixedDelayString = "${biblionet.prestamos.reconciliacion-ms:600000}",
+            initialDelayString = "${biblionet.prestamos.reconciliacion-ms:600000}")
+    @Transactional(readOnly = true)
+    public void reconciliar() {
+        long inicio = version.get();
+        Map<String, Activos> enTabla = new HashMap<>();
+        try (Stream<PrestamoRepository.PrestamoCuenta> activos = prestamoRepo.streamActiveWithAccount()) {
+            activos.forEach(p -> enTabla.put(p.getNumeroCuenta(),
+                    enTabla.getOrDefault(p.getNumeroCuenta(), VACIO).con(p.getPrestamoId(), p.getLibroId(), 0)));
+        }
+
+        Set<String> cuentas = new HashSet<>(enTabla.keySet());
+        cuentas.addAll(porCuenta.keySet());
+        int discrepancias = 0;
+        for (String cuenta : cuentas) {
+            Activos esperado = enTabla.getOrDefault(cuenta, VACIO);
+            boolean[] corregida = { false };
+            porCuenta.compute(cuenta, (c, actual) -> {
+                Activos enMemoria = actual != null ? actual : VACIO;
+                if (enMemoria.version > inicio || Arrays.equals(enMemoria.prestamos, esperado.prestamos)) {
+                    return actual;
+                }
+                corregida[0] = true;
+                return normalizar(new Activos(esperado.prestamos, esperado.libros, enMemoria.pendientes,
+                        version.incrementAndGet()));
+            });
+            if (corregida[0]) {
+                discrepancias++;
+            }
+        }
+
+        if (cargado) {
+            reconciliaciones.increment();
+            discrepanciasTotales.add(discrepancias);
+            discrepanciasUltima = discrepancias;
+            if (discrepancias > 0) {
+                log.warn("Reconciliación de préstamos activos: {} cuentas corregidas", discrepancias);
+            }
+        } else {
+            cargado = true;
+            log.info("Préstamos activos cargados: {} cuentas", porCuenta.size());
+        }
+    }
+
+    /**
+     * Aplica los préstamos y devoluciones confirmados en otros nodos.
+     *
+     * @param cambio Cambio recibido de otro nodo
+     */
+    @EventListener
+    public void alCambioRemoto(ClusterService.Cambio cambio) {
+        switch (cambio.tipo()) {
+            case PRESTAMO -> aplicar(cambio.numeroCuenta(),
+                    a -> a.con(cambio.id(), cambio.libroId(), version.incrementAndGet()));
+            case DEVOLUCION -> aplicar(cambio.numeroCuenta(), a -> a.sin(cambio.id(), version.incrementAndGet()));
+            default -> { }
+        }
+    }
+
+    /**
+     * Recarga la vista desde la tabla cuando se han perdido cambios de otro nodo.
+     *
+     * @param resincronizacion Aviso de resincronización
+     */
+    @EventListener
+    @Transactional(readOnly = true)
+    public void alResincronizar(ClusterService.Resincronizacion resincronizacion) {
+        reconciliar();
+    }
+
+    /**
+     * Reserva un hueco para un nuevo préstamo del usuario, comprobando el límite de préstamos activos.
+     * Debe llamarse dentro de la transacción que crea el préstamo: el hueco se libera al terminar esta,
+     * y mientras tanto cuenta para el límite, de modo que dos préstamos simultáneos no pueden superarlo.
+     *
+     * @param numeroCuenta Número de cuenta del usuario
+     * @throws ResponseStatusException 409 si el usuario ya tiene el máximo de préstamos activos
+     */
+    public void reservarCupo(String numeroCuenta) {
+        if (limitePorUsuario <= 0) {
+            return;
+        }
+        long enTabla = enMemoria()
+                ? -1
+                : prestamoRepo.countByUsuarioNumeroCuentaAndFechaDevolucionIsNull(numeroCuenta);
+        int[] total = { 0 };
+        boolean[] admitido = { false };
+        porCuenta.compute(numeroCuenta, (c, actual) -> {
+            Activos activos = actual != null ? actual : VACIO;
+            total[0] = (int) (enTabla >= 0 ? enTabla : activos.prestamos.length) + activos.pendientes;
+            if (total[0] >= limitePorUsuario) {
+                return actual;
+            }
+            admitido[0] = true;
+            return new Activos(activos.prestamos, activos.libros, activos.pendientes + 1, activos.version);
+        });
+        if (!admitido[0]) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "El usuario " + numeroCuenta + " ya tiene "
+                    + total[0] + " préstamos activos (límite " + limitePorUsuario + ")");
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    liberarCupo(numeroCuenta);
+                }
+            });
+        } else {
+            liberarCupo(numeroCuenta);
+        }
+    }
+
+    /**
+     * Registra un nuevo préstamo cuando se confirme la transacción en curso.
+     *
+     * @param numeroCuenta Número de cuenta del usuario
+     * @param prestamoId   ID del préstamo
+     * @param libroId      ID del libro prestado
+     */
+    public void registrarPrestamo(String numeroCuenta, Long prestamoId, Long libroId) {
+        despuesDeConfirmar(() -> aplicar(numeroCuenta, a -> a.con(prestamoId, libroId, version.incrementAndGet())));
+    }
+
+    /**
+     * Registra la devolución de un préstamo cuando se confirme la transacción en curso.
+     *
+     * @param numeroCuenta Número de cuenta del usuario
+     * @param prestamoId   ID del préstamo devuelto
+     */
+    public void registrarDevolucion(String numeroCuenta, Long prestamoId) {
+        despuesDeConfirmar(() -> aplicar(numeroCuenta, a -> a.sin(prestamoId, version.incrementAndGet())));
+    }
+
+    /**
+     * Registra la devolución de varios préstamos cuando se confirme la transacción en curso.
+     *
+     * @param devueltos Préstamos devueltos con la cuenta de su usuario
+     */
+    public void registrarDevoluciones(Collection<PrestamoRepository.PrestamoCuenta> devueltos) {
+        List<PrestamoRepository.PrestamoCuenta> copia = List.copyOf(devueltos);
+        despuesDeConfirmar(() -> copia.forEach(p ->
+                aplicar(p.getNumeroCuenta(), a -> a.sin(p.getPrestamoId(), version.incrementAndGet()))));
+    }
+
+    /**
+     * Devuelve los préstamos activos de un usuario.
+     *
+     * @param numeroCuenta Número de cuenta del usuario
+     * @return IDs de los préstamos activos y de sus libros
+     */
+    public ActivosDto activos(String numeroCuenta) {
+        Activos activos;
+        if (enMemoria()) {
+            activos = porCuenta.getOrDefault(numeroCuenta, VACIO);
+        } else {
+            activos = VACIO;
+            for (var prestamo : prestamoRepo.findByUsuarioNumeroCuentaAndFechaDevolucionIsNull(numeroCuenta)) {
+                activos = activos.con(prestamo.getId(), prestamo.getLibro().getId(), 0);
+            }
+        }
+        List<Long> prestamos = new ArrayList<>(activos.prestamos.length);
+        List<Long> libros = new ArrayList<>(activos.libros.length);
+        for (int i = 0; i < activos.prestamos.length; i++) {
+            prestamos.add(activos.prestamos[i]);
+            libros.add(activos.libros[i]);
+        }
+        return new ActivosDto(numeroCuenta, prestamos.size(), limitePorUsuario, prestamos, libros);
+    }
+
+    /**
+     * Devuelve el tamaño de la vista y el resultado de las reconciliaciones.
+     *
+     * @return Estadísticas de la vista de préstamos activos
+     */
+    public EstadisticasDto estadisticas() {
+        long prestamos = 0;
+        for (Activos activos : porCuenta.values()) {
+            prestamos += activos.prestamos.length;
+        }
+        return new EstadisticasDto(cargado, porCuenta.size(), prestamos, reconciliaciones.sum(),
+                discrepanciasUltima, discrepanciasTotales.sum());
+    }
+
+    private boolean enMemoria() {
+        return cargado && cluster.coherente();
+    }
+
+    private void liberarCupo(String numeroCuenta) {
+        porCuenta.computeIfPresent(numeroCuenta, (c, activos) -> normalizar(
+                new Activos(activos.prestamos, activos.libros, Math.max(0, activos.pendientes - 1), activos.version)));
+    }
+
+    private void aplicar(String numeroCuenta, UnaryOperator<Activos> cambio) {
+        porCuenta.compute(numeroCuenta, (c, actual) -> normalizar(cambio.apply(actual != null ? actual : VACIO)));
+    }
+
+    private static Activos normalizar(Activos activos) {
+        return activos.prestamos.length == 0 && activos.pendientes == 0 ? null : activos;
+    }
+
+    private static void despuesDeConfirmar(Runnable accion) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    accion.run();
+                }
+            });
+        } else {
+            accion.run();
+        }
+    }
+
+    /**
+     * Préstamos activos de un usuario, inmutable: cada cambio crea una instancia nueva.
+     * Los préstamos se guardan ordenados por ID, con el libro de cada uno en la misma posición.
+     */
+    static final class Activos {
+        final long[] prestamos;
+        final long[] libros;
+        final int pendientes;
+        final long version;
+
+        Activos(long[] prestamos, long[] libros, int pendientes, long version) {
+            this.prestamos = prestamos;
+            this.libros = libros;
+            this.pendientes = pendientes;
+            this.version = version;
+        }
+
+        Activos con(long prestamoId, long libroId, long nuevaVersion) {
+            int posicion = Arrays.binarySearch(prestamos, prestamoId);
+            if (posicion >= 0) {
+                return this;
+            }
+            posicion = -posicion - 1;
+            long[] nuevosPrestamos = new long[prestamos.length + 1];
+            long[] nuevosLibros = new long[libros.length + 1];
+            System.arraycopy(prestamos, 0, nuevosPrestamos, 0, posicion);
+            System.arraycopy(libros, 0, nuevosLibros, 0, posicion);
+            nuevosPrestamos[posicion] = prestamoId;
+            nuevosLibros[posicion] = libroId;
+            System.arraycopy(prestamos, posicion, nuevosPrestamos, posicion + 1, prestamos.length - posicion);
+            System.arraycopy(libros, posicion, nuevosLibros, posicion + 1, libros.length - posicion);
+            return new Activos(nuevosPrestamos, nuevosLibros, pendientes, nuevaVersion);
+        }
+
+        Activos sin(long prestamoId, long nuevaVersion) {
+            int posicion = Arrays.binarySearch(prestamos, prestamoId);
+            if (posicion < 0) {
+                return this;
+            }
+            long[] nuevosPrestamos = new long[prestamos.length - 1];
+            long[] nuevosLibros = new long[libros.length - 1];
+            System.arraycopy(prestamos, 0, nuevosPrestamos, 0, posicion);
+            System.arraycopy(libros, 0, nuevosLibros, 0, posicion);
+            System.arraycopy(prestamos, posicion + 1, nuevosPrestamos, posicion, prestamos.length - posicion - 1);
+            System.arraycopy(libros, posicion + 1, nuevosLibros, posicion, libros.length - posicion - 1);
+            return new Activos(nuevosPrestamos, nuevosLibros, pendientes, nuevaVersion);
+        }
+    }
+
+    /**
+     * Préstamos activos de un usuario.
+     */
+    public static class ActivosDto {
+        private final String numeroCuenta;
+        private final int total;
+        private final int limite;
+        private final List<Long> prestamoIds;
+        private final List<Long> libroIds;
+
+        /**
+         * Constructor con todos los campos.
+         *
+         * @param numeroCuenta Número de cuenta del usuario
+         * @param total        Número de préstamos activos
+         * @param limite       Préstamos activos máximos por usuario (0 si no hay límite)
+         * @param prestamoIds  IDs de los préstamos activos
+         * @param libroIds     IDs de los libros prestados, en el mismo orden
+         */
+        public ActivosDto(String numeroCuenta, int total, int limite, List<Long> prestamoIds, List<Long> libroIds) {
+            this.numeroCuenta = numeroCuenta;
+            this.total = total;
+            this.limite = limite;
+            this.prestamoIds = prestamoIds;
+            this.libroIds = libroIds;
+        }
+
+        /**
+         * @return Número de cuenta del usuario
+         */
+        public String getNumeroCuenta() {
+            return numeroCuenta;
+        }
+
+        /**
+         * @return Número de préstamos activos
+         */
+        public int getTotal() {
+            return total;
+        }
+
+        /**
+         * @return Préstamos activos máximos por usuario (0 si no hay límite)
+         */
+        public int getLimite() {
+            return limite;
+        }
+
+        /**
+         * @return IDs de los préstamos activos
+         */
+        public List<Long> getPrestamoIds() {
+            return prestamoIds;
+        }
+
+        /**
+         * @return IDs de los libros prestados, en el mismo orden que los préstamos
+         */
+        public List<Long> getLibroIds() {
+            return libroIds;
+        }
+    }
+
+    /**
+     * Métricas de la vista de préstamos activos.
+     */
+    public static class EstadisticasDto {
+        private final boolean cargado;
+        private final int cuentas;
+        private final long prestamos;
+        private final long reconciliaciones;
+        private final int discrepanciasUltima;
+        private final long discrepanciasTotales;
+
+        /**
+         * Constructor con todos los campos.
+         *
+         * @param cargado              Si la vista ya se cargó
+         * @param cuentas              Cuentas con préstamos activos
+         * @param prestamos            Préstamos activos en la vista
+         * @param reconciliaciones     Reconciliaciones hechas desde el arranque
+         * @param discrepanciasUltima  Cuentas corregidas en la última reconciliación
+         * @param discrepanciasTotales Cuentas corregidas desde el arranque
+         */
+        public EstadisticasDto(boolean cargado, int cuentas, long prestamos, long reconciliaciones,
+                               int discrepanciasUltima, long discrepanciasTotales) {
+            this.cargado = cargado;
+            this.cuentas = cuentas;
+            this.prestamos = prestamos;
+            this.reconciliaciones = reconciliaciones;
+            this.discrepanciasUltima = discrepanciasUltima;
+            this.discrepanciasTotales = discrepanciasTotales;
+        }
+
+        /**
+         * @return Si la vista ya se cargó
+         */
+        public boolean isCargado() {
+            return cargado;
+        }
+
+        /**
+         * @return Cuentas con préstamos activos
+         */
+        public int getCuentas() {
+            return cuentas;
+        }
+
+        /**
+         * @return Préstamos activos en la vista
+         */
+        public long getPrestamos() {
+            return prestamos;
+        }
+
+        /**
+         * @return Reconciliaciones hechas desde el arranque
+         */
+        public long getReconciliaciones() {
+            return reconciliaciones;
+        }
+
+        /**
+         * @return Cuentas corregidas en la última reconciliación
+         */
+        public int getDiscrepanciasUltima() {
+            return discrepanciasUltima;
+        }
+
+        /**
+         * @return Cuentas corregidas desde el arranque
+         */
+        public long getDiscrepanciasTotales() {
+            return discrepanciasTotales;
+        }
+    }
+}
@@ -0,0 +1,369 @@
+package com.biblios.biblionet.service;
+
+import com.biblios.biblionet.repository.PrestamoHistoricoRepository;
+import com.biblios.biblionet.repository.PrestamoRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * Motor de recomendaciones "también prestados": mantiene en memoria una matriz dispersa de
+ * co-ocurrencias libro-libro (cuántos usuarios han tomado prestados ambos libros).
+ * <p>
+ * La matriz se construye al arrancar recorriendo el historial de préstamos (archivados y activos)
+ * en orden cronológico, y se actualiza de forma incremental con cada nuevo préstamo. La memoria está
+ * acotada: de cada usuario solo se recuerdan sus últimos libros, y cada libro guarda como máximo
+ * un número fijo de vecinos, reemplazando al menos frecuente cuando se llena (algoritmo Space-Saving).
+ * Si se pierden préstamos de otro nodo del cluster, la matriz se reconstruye y se sustituye de una vez.
+ */
+@Service
+public class RecomendacionesService {
+
+    private static final Logger log = LoggerFactory.getLogger(RecomendacionesService.class);
+
+    private final PrestamoRepository prestamoRepo;
+    private final PrestamoHistoricoRepository historicoRepo;
+    private final int historialMaximo;
+    private final int vecinosMaximos;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Object reconstruccion = new Object();
+    private MapaLongObjeto<Historial> historialPorUsuario = new MapaLongObjeto<>(1024);
+    private MapaLongObjeto<MapaLongInt> vecinosPorLibro = new MapaLongObjeto<>(1024);
+    /**
+     * Préstamos (usuario, libro) registrados mientras se construye una matriz nueva, para repetirlos sobre ella.
+     */
+    private List<long[]> prestamosDuranteReconstruccion;
+
+    /**
+     * Constructor con inyección de dependencias.
+     *
+     * @param prestamoRepo    Repositorio de préstamos
+     * @param historicoRepo   Repositorio del archivo de préstamos
+     * @param historialMaximo Número de libros recientes que se recuerdan por usuario
+     * @param vecinosMaximos  Número máximo de libros relacionados que se guardan por libro
+     */
+    public RecomendacionesService(PrestamoRepository prestamoRepo,
+                                  PrestamoHistoricoRepository historicoRepo,
+                                  @Value("${biblionet.recomendaciones.historial-por-usuario:50}") int historialMaximo,
+                                  @Value("${biblionet.recomendaciones.vecinos-por-libro:100}") int vecinosMaximos) {
+        this.prestamoRepo = prestamoRepo;
+        this.historicoRepo = historicoRepo;
+        this.historialMaximo = historialMaximo;
+        this.vecinosMaximos = vecinosMaximos;
+    }
+
+    /**
+     * Construye la matriz recorriendo, sin cargar entidades, todo el historial de préstamos.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void cargar() {
+        long inicio = System.nanoTime();
+        reconstruir();
+        EstadisticasDto estadisticas = estadisticas();
+        log.info("Matriz de co-préstamos construida en {} ms: {} libros, {} pares, ~{} bytes",
+                (System.nanoTime() - inicio) / 1_000_000, estadisticas.getLibros(),
+                estadisticas.getPares(), estadisticas.getBytesEstimados());
+    }
+
+    /**
+     * Registra un nuevo préstamo. Si hay una transacción en curso, la matriz se actualiza
+     * solo cuando esta se confirma.
+     *
+     * @param usuarioId ID del usuario
+     * @param libroId   ID del libro prestado
+     */
+    public void registrar(Long usuarioId, Long libroId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    aplicar(usuarioId, libroId);
+                }
+            });
+        } else {
+            aplicar(usuarioId, libroId);
+        }
+    }
+
+    /**
+     * Registra los préstamos creados en otros nodos.
+     *
+     * @param cambio Cambio recibido de otro nodo
+     */
+    @EventListener
+    public void alCambioRemoto(ClusterService.Cambio cambio) {
+        if (cambio.tipo() == ClusterService.Cambio.Tipo.PRESTAMO) {
+            aplicar(cambio.usuarioId(), cambio.libroId());
+        }
+    }
+
+    /**
+     * Reconstruye la matriz cuando se han perdido préstamos de otro nodo.
+     *
+     * @param resincronizacion Aviso de resincronización
+     */
+    @EventListener
+    @Transactional(readOnly = true)
+    public void alResincronizar(ClusterService.Resincronizacion resincronizacion) {
+        reconstruir();
+    }
+
+    /**
+     * Devuelve los IDs de los libros más prestados por los mismos usuarios que el libro dado.
+     *
+     * @param libroId ID del libro
+     * @param n       Número máximo de libros a devolver
+     * @return IDs de los libros relacionados, del más al menos frecuente
+     */
+    public List<Long> tambienPrestados(long libroId, int n) {
+        if (n <= 0) {
+            return List.of();
+        }
+        long[] mejoresLibros = new long[n];
+        int[] mejoresCuentas = new int[n];
+        int[] encontrados = { 0 };
+        lock.readLock().lock();
+        try {
+            MapaLongInt vecinos = vecinosPorLibro.get(libroId);
+            if (vecinos == null) {
+                return List.of();
+            }
+            vecinos.recorrer((vecino, cuenta) -> {
+                int total = encontrados[0];
+                if (total == n && cuenta <= mejoresCuentas[n - 1]) {
+                    return;
+                }
+                int i = Math.min(total, n - 1);
+                while (i > 0 && mejoresCuentas[i - 1] < cuenta) {
+                    mejoresCuentas[i] = mejoresCuentas[i - 1];
+                    mejoresLibros[i] = mejoresLibros[i - 1];
+                    i--;
+                }
+                mejoresCuentas[i] = cuenta;
+                mejoresLibros[i] = vecino;
+                if (total < n) {
+                    encontrados[0]++;
+                }
+            });
+        } finally {
+            lock.readLock().unlock();
+        }
+        List<Long> resultado = new ArrayList<>(encontrados[0]);
+        for (int i = 0; i < encontrados[0]; i++) {
+            resultado.add(mejoresLibros[i]);
+        }
+        return resultado;
+    }
+
+    /**
+     * Devuelve las métricas de tamaño de la matriz.
+     *
+     * @return Estadísticas de la matriz de co-préstamos
+     */
+    public EstadisticasDto estadisticas() {
+        lock.readLock().lock();
+        try {
+            long[] pares = { 0 };
+            long[] bytes = { historialPorUsuario.bytesEstimados() + vecinosPorLibro.bytesEstimados() };
+            vecinosPorLibro.recorrerValores(vecinos -> {
+                pares[0] += vecinos.tamano();
+                bytes[0] += vecinos.bytesEstimados();
+            });
+            historialPorUsuario.recorrerValores(historial ->
+                    bytes[0] += 32 + 16 + (long) historial.libros.length * Long.BYTES);
+            return new EstadisticasDto(historialPorUsuario.tamano(), vecinosPorLibro.tamano(), pares[0], bytes[0]);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Construye una matriz nueva sin bloquear las consultas y la sustituye por la actual. Los préstamos
+     * registrados mientras tanto se repiten sobre la nueva antes de la sustitución.
+     */
+    private void reconstruir() {
+        synchronized (reconstruccion) {
+            lock.writeLock().lock();
+            try {
+                prestamosDuranteReconstruccion = new ArrayList<>();
+            } finally {
+                lock.writeLock().unlock();
+            }
+            MapaLongObjeto<Historial> historiales = new MapaLongObjeto<>(1024);
+            MapaLongObjeto<MapaLongInt> vecinos = new MapaLongObjeto<>(1024);
+            boolean completa = false;
+            try {
+                try (Stream<PrestamoRepository.ParUsuarioLibro> archivados = historicoRepo.streamUserBookPairs()) {
+                    archivados.forEach(par -> aplicar(historiales, vecinos, par.getUsuarioId(), par.getLibroId()));
+                }
+                try (Stream<PrestamoRepository.ParUsuarioLibro> actuales = prestamoRepo.streamUserBookPairs()) {
+                    actuales.forEach(par -> aplicar(historiales, vecinos, par.getUsuarioId(), par.getLibroId()));
+                }
+                completa = true;
+            } finally {
+                lock.writeLock().lock();
+                try {
+                    // Si la lectura falla se conserva la matriz anterior, que sigue recibiendo los préstamos.
+                    if (completa) {
+                        for (long[] prestamo : prestamosDuranteReconstruccion) {
+                            aplicar(historiales, vecinos, prestamo[0], prestamo[1]);
+                        }
+                        historialPorUsuario = historiales;
+                        vecinosPorLibro = vecinos;
+                    }
+                    prestamosDuranteReconstruccion = null;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+        }
+    }
+
+    private void aplicar(long usuarioId, long libroId) {
+        lock.writeLock().lock();
+        try {
+            aplicar(historialPorUsuario, vecinosPorLibro, usuarioId, libroId);
+            if (prestamosDuranteReconstruccion != null) {
+                prestamosDuranteReconstruccion.add(new long[] { usuarioId, libroId });
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void aplicar(MapaLongObjeto<Historial> historiales, MapaLongObjeto<MapaLongInt> vecinosPorLibro,
+                         long usuarioId, long libroId) {
+        Historial historial = historiales.obtenerOCrear(usuarioId, id -> new Historial(historialMaximo));
+        if (historial.contiene(libroId)) {
+            return;
+        }
+        for (int i = 0; i < historial.tamano; i++) {
+            long anterior = historial.libros[i];
+            incrementar(vecinosPorLibro, libroId, anterior);
+            incrementar(vecinosPorLibro, anterior, libroId);
+        }
+        historial.agregar(libroId);
+    }
+
+    private void incrementar(MapaLongObjeto<MapaLongInt> vecinosPorLibro, long libroId, long vecino) {
+        MapaLongInt vecinos = vecinosPorLibro.obtenerOCrear(libroId, id -> new MapaLongInt(8));
+        if (vecinos.contiene(vecino) || vecinos.tamano() < vecinosMaximos) {
+            vecinos.sumar(vecino, 1);
+            return;
+        }
+        // Space-Saving: el nuevo vecino reemplaza al menos frecuente y hereda su cuenta.
+        long minimo = vecinos.claveMinima();
+        int cuenta = vecinos.get(minimo);
+        vecinos.eliminar(minimo);
+        vecinos.sumar(vecino, cuenta + 1);
+    }
+
+    /**
+     * Últimos libros prestados por un usuario, en un búfer circular. El arreglo empieza pequeño y se
+     * duplica según hace falta hasta la capacidad máxima, porque la mayoría de los usuarios tienen
+     * pocos préstamos.
+     */
+    private static final class Historial {
+        private static final int CAPACIDAD_INICIAL = 4;
+
+        final int capacidad;
+        long[] libros;
+        int tamano;
+        int siguiente;
+
+        Historial(int capacidad) {
+            this.capacidad = capacidad;
+            libros = new long[Math.min(CAPACIDAD_INICIAL, capacidad)];
+        }
+
+        boolean contiene(long libroId) {
+            for (int i = 0; i < tamano; i++) {
+                if (libros[i] == libroId) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        void agregar(long libroId) {
+            if (tamano == libros.length && libros.length < capacidad) {
+                // Hasta alcanzar la capacidad no se ha sobrescrito nada: los libros están en orden de llegada.
+                libros = Arrays.copyOf(libros, Math.min(libros.length * 2, capacidad));
+                siguiente = tamano;
+            }
+            libros[siguiente] = libroId;
+            siguiente = (siguiente + 1) % libros.length;
+            if (tamano < libros.length) {
+                tamano++;
+            }
+        }
+    }
+
+    /**
+     * Métricas de tamaño de la matriz de co-préstamos.
+     */
+    public static class EstadisticasDto {
+        private final int usuarios;
+        private final int libros;
+        private final long pares;
+        private final long bytesEstimados;
+
+        /**
+         * Constructor con todos los campos.
+         *
+         * @param usuarios       Usuarios con historial en memoria
+         * @param libros         Libros con vecinos en la matriz
+         * @param pares          Entradas (libro, vecino) de la matriz
+         * @param bytesEstimados Memoria estimada de las estructuras
+         */
+        public EstadisticasDto(int usuarios, int libros, long pares, long bytesEstimados) {
+            this.usuarios = usuarios;
+            this.libros = libros;
+            this.pares = pares;
+            this.bytesEstimados = bytesEstimados;
+        }
+
+        /**
+         * @return Usuarios con historial en memoria
+         */
+        public int getUsuarios() {
+            return usuarios;
+        }
+
+        /**
+         * @return Libros con vecinos en la matriz
+         */
+        public int getLibros() {
+            return libros;
+        }
+
+        /**
+         * @return Entradas (libro, vecino) de la matriz
+         */
+        public long getPares() {
+            return pares;
+        }
+
+        /**
+         * @return Memoria estimada de las estructuras en bytes
+         */
+        public long getBytesEstimados() {
+            return bytesEstimados;
+        }
+    }
+}
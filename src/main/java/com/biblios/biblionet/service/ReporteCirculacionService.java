@@ -0,0 +1,306 @@
+package com.biblios.biblionet.service;
+
+import com.biblios.biblionet.repository.PrestamoHistoricoRepository;
+import com.biblios.biblionet.repository.PrestamoRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Servicio que genera informes de circulación (préstamos por género, por autor o por mes).
+ * <p>
+ * Los préstamos del periodo, activos y, opcionalmente, archivados, se reparten en bloques de IDs de
+ * tamaño fijo. Cada bloque se lee con una consulta independiente que devuelve solo los tres campos
+ * necesarios y se agrega en un mapa local; un {@link ForkJoinPool} propio procesa los bloques en paralelo
+ * y combina los mapas parciales. La memoria usada queda acotada por el tamaño de bloque multiplicado
+ * por el paralelismo, más un contador por cada clave distinta del informe.
+ */
+@Service
+public class ReporteCirculacionService {
+
+    private static final String SIN_ESPECIFICAR = "(sin especificar)";
+    private static final DateTimeFormatter FORMATO_MES = DateTimeFormatter.ofPattern("yyyy-MM");
+
+    private final PrestamoRepository prestamoRepo;
+    private final PrestamoHistoricoRepository historicoRepo;
+    private final int tamanoBloque;
+    private final ForkJoinPool pool;
+
+    /**
+     * Constructor con inyección de dependencias.
+     *
+     * @param prestamoRepo  Repositorio de préstamos
+     * @param historicoRepo Repositorio del archivo de préstamos
+     * @param tamanoBloque  Amplitud en IDs de cada bloque leído de la base de datos
+     * @param paralelismo   Bloques procesados a la vez (0 para usar todos los núcleos); en cualquier caso se
+     *                      limita a la mitad del pool de conexiones, para que un informe no deje sin
+     *                      conexión al resto de peticiones
+     * @param conexiones    Tamaño del pool de conexiones
+     */
+    public ReporteCirculacionService(PrestamoRepository prestamoRepo,
+                                     PrestamoHistoricoRepository historicoRepo,
+                                     @Value("${biblionet.reportes.tamano-bloque:10000}") int tamanoBloque,
+                                     @Value("${biblionet.reportes.paralelismo:0}") int paralelismo,
+                                     @Value("${spring.datasource.hikari.maximum-pool-size:10}") int conexiones) {
+        this.prestamoRepo = prestamoRepo;
+        this.historicoRepo = historicoRepo;
+        this.tamanoBloque = tamanoBloque;
+        int solicitado = paralelismo > 0 ? paralelismo : Runtime.getRuntime().availableProcessors();
+        this.pool = new ForkJoinPool(Math.min(solicitado, Math.max(1, conexiones / 2)));
+    }
+
+    /**
+     * Agrupa y cuenta los préstamos hechos en un periodo.
+     *
+     * @param dimension Criterio de agrupación
+     * @param desde     Fecha de préstamo mínima (inclusive)
+     * @param hasta     Fecha de préstamo máxima (inclusive)
+     * @param historial Si es true, incluye también los préstamos archivados
+     * @return Informe con el número de préstamos por clave
+     */
+    public Reporte generar(Dimension dimension, LocalDate desde, LocalDate hasta, boolean historial) {
+        long inicio = System.nanoTime();
+        List<Bloque> bloques = new ArrayList<>();
+        agregarBloques(bloques, prestamoRepo.findIdRangeByFechaPrestamoBetween(desde, hasta),
+                (bloqueDesde, bloqueHasta) -> prestamoRepo.findCirculationRows(bloqueDesde, bloqueHasta, desde, hasta));
+        if (historial) {
+            agregarBloques(bloques, historicoRepo.findIdRangeByFechaPrestamoBetween(desde, hasta),
+                    (bloqueDesde, bloqueHasta) -> historicoRepo.findCirculationRows(bloqueDesde, bloqueHasta, desde, hasta));
+        }
+
+        Map<String, Long> cuentas = bloques.isEmpty()
+                ? Map.of()
+                : pool.invoke(new Agregacion(bloques, 0, bloques.size(), dimension));
+
+        List<Fila> filas = new ArrayList<>(cuentas.size());
+        long total = 0;
+        for (Map.Entry<String, Long> cuenta : cuentas.entrySet()) {
+            filas.add(new Fila(cuenta.getKey(), cuenta.getValue()));
+            total += cuenta.getValue();
+        }
+        filas.sort(dimension == Dimension.MES
+                ? Comparator.comparing(Fila::getClave)
+                : Comparator.comparingLong(Fila::getPrestamos).reversed().thenComparing(Fila::getClave));
+        return new Reporte(dimension, desde, hasta, total, filas, bloques.size(),
+                (System.nanoTime() - inicio) / 1_000_000);
+    }
+
+    private void agregarBloques(List<Bloque> bloques, PrestamoRepository.RangoIds rango,
+                                LectorBloque lector) {
+        if (rango == null || rango.getMinimo() == null) {
+            return;
+        }
+        for (long desde = rango.getMinimo(); desde <= rango.getMaximo(); desde += tamanoBloque) {
+            bloques.add(new Bloque(desde, desde + tamanoBloque, lector));
+        }
+    }
+
+    private static String clave(Dimension dimension, PrestamoRepository.FilaCirculacion fila) {
+        String clave = switch (dimension) {
+            case GENERO -> fila.getGenero();
+            case AUTOR -> fila.getAutor();
+            case MES -> fila.getFechaPrestamo().format(FORMATO_MES);
+        };
+        return clave == null || clave.isBlank() ? SIN_ESPECIFICAR : clave;
+    }
+
+    /**
+     * Consulta que lee las filas de un bloque de IDs [desde, hasta) de una de las tablas de préstamos.
+     */
+    @FunctionalInterface
+    private interface LectorBloque {
+        List<PrestamoRepository.FilaCirculacion> leer(long desde, long hasta);
+    }
+
+    /**
+     * Bloque de IDs [desde, hasta) junto con la consulta que lo lee.
+     */
+    private record Bloque(long desde, long hasta, LectorBloque lector) {
+
+        List<PrestamoRepository.FilaCirculacion> leer() {
+            return lector.leer(desde, hasta);
+        }
+    }
+
+    /**
+     * Tarea que agrega un intervalo de bloques, dividiéndolo por la mitad hasta quedarse con uno.
+     */
+    private static final class Agregacion extends RecursiveTask<Map<String, Long>> {
+
+        private final List<Bloque> bloques;
+        private final int inicio;
+        private final int fin;
+        private final Dimension dimension;
+
+        Agregacion(List<Bloque> bloques, int inicio, int fin, Dimension dimension) {
+            this.bloques = bloques;
+            this.inicio = inicio;
+            this.fin = fin;
+            this.dimension = dimension;
+        }
+
+        @Override
+        protected Map<String, Long> compute() {
+            if (fin - inicio == 1) {
+                Map<String, Long> cuentas = new HashMap<>();
+                for (PrestamoRepository.FilaCirculacion fila : bloques.get(inicio).leer()) {
+                    cuentas.merge(clave(dimension, fila), 1L, Long::sum);
+                }
+                return cuentas;
+            }
+            int medio = (inicio + fin) >>> 1;
+            Agregacion izquierda = new Agregacion(bloques, inicio, medio, dimension);
+            izquierda.fork();
+            Map<String, Long> cuentas = new Agregacion(bloques, medio, fin, dimension).compute();
+            Map<String, Long> otras = izquierda.join();
+            Map<String, Long> mayor = cuentas.size() >= otras.size() ? cuentas : otras;
+            Map<String, Long> menor = mayor == cuentas ? otras : cuentas;
+            menor.forEach((clave, cuenta) -> mayor.merge(clave, cuenta, Long::sum));
+            return mayor;
+        }
+    }
+
+    /**
+     * Criterio de agrupación de un informe de circulación.
+     */
+    public enum Dimension {
+        /**
+         * Por género del libro.
+         */
+        GENERO,
+        /**
+         * Por autor del libro.
+         */
+        AUTOR,
+        /**
+         * Por mes de la fecha de préstamo (yyyy-MM).
+         */
+        MES
+    }
+
+    /**
+     * Número de préstamos de una clave del informe.
+     */
+    public static class Fila {
+        private final String clave;
+        private final long prestamos;
+
+        /**
+         * Constructor con todos los campos.
+         *
+         * @param clave     Género, autor o mes
+         * @param prestamos Número de préstamos
+         */
+        public Fila(String clave, long prestamos) {
+            this.clave = clave;
+            this.prestamos = prestamos;
+        }
+
+        /**
+         * @return Género, autor o mes
+         */
+        public String getClave() {
+            return clave;
+        }
+
+        /**
+         * @return Número de préstamos
+         */
+        public long getPrestamos() {
+            return prestamos;
+        }
+    }
+
+    /**
+     * Resultado de un informe de circulación.
+     */
+    public static class Reporte {
+        private final Dimension dimension;
+        private final LocalDate desde;
+        private final LocalDate hasta;
+        private final long totalPrestamos;
+        private final List<Fila> filas;
+        private final int bloques;
+        private final long milisegundos;
+
+        /**
+         * Constructor con todos los campos.
+         *
+         * @param dimension      Criterio de agrupación
+         * @param desde          Inicio del periodo
+         * @param hasta          Fin del periodo
+         * @param totalPrestamos Préstamos contados
+         * @param filas          Préstamos por clave
+         * @param bloques        Bloques de IDs procesados
+         * @param milisegundos   Tiempo de generación
+         */
+        public Reporte(Dimension dimension, LocalDate desde, LocalDate hasta, long totalPrestamos,
+                       List<Fila> filas, int bloques, long milisegundos) {
+            this.dimension = dimension;
+            this.desde = desde;
+            this.hasta = hasta;
+            this.totalPrestamos = totalPrestamos;
+            this.filas = filas;
+            this.bloques = bloques;
+            this.milisegundos = milisegundos;
+        }
+
+        /**
+         * @return Criterio de agrupación
+         */
+        public Dimension getDimension() {
+            return dimension;
+        }
+
+        /**
+         * @return Inicio del periodo
+         */
+        public LocalDate getDesde() {
+            return desde;
+        }
+
+        /**
+         * @return Fin del periodo
+         */
+        public LocalDate getHasta() {
+            return hasta;
+        }
+
+        /**
+         * @return Préstamos contados
+         */
+        public long getTotalPrestamos() {
+            return totalPrestamos;
+        }
+
+        /**
+         * @return Préstamos por clave
+         */
+        public List<Fila> getFilas() {
+            return filas;
+        }
+
+        /**
+         * @return Bloques de IDs procesados
+         */
+        public int getBloques() {
+            return bloques;
+        }
+
+        /**
+         * @return Tiempo de generación en milisegundos
+         */
+        public long getMilisegundos() {
+            return milisegundos;
+        }
+    }
+}
@@ -0,0 +1,256 @@
+package com.biblios.biblionet.service;
+
+import com.biblios.biblionet.model.EstadoReserva;
+import com.biblios.biblionet.model.Libro;
+import com.biblios.biblionet.model.Prestamo;
+import com.biblios.biblionet.model.Reserva;
+import com.biblios.biblionet.model.Usuario;
+import com.biblios.biblionet.repository.ExistenciaRepository;
+import com.biblios.biblionet.repository.PrestamoRepository;
+import com.biblios.biblionet.repository.ReservaRepository;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Servicio de reservas de libros prestados.
+ * Cada libro tiene una cola FIFO de reservas; al devolverse un ejemplar, la reserva más antigua
+ * recibe el préstamo en la misma transacción de la devolución, sin que el usuario tenga que
+ * consultar periódicamente la disponibilidad.
+ */
+@Service
+public class ReservaService {
+
+    private final ReservaRepository reservaRepo;
+    private final PrestamoRepository prestamoRepo;
+    private final ExistenciaRepository existenciaRepo;
+    private final RecomendacionesService recomendaciones;
+    private final PrestamosActivosService activos;
+    private final ClusterService cluster;
+
+    private final LongAdder asignadas = new LongAdder();
+    private final LongAdder esperaTotalSegundos = new LongAdder();
+    private final LongAccumulator esperaMaximaSegundos = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Constructor con inyección de dependencias.
+     *
+     * @param reservaRepo    Repositorio de reservas
+     * @param prestamoRepo   Repositorio de préstamos
+     * @param existenciaRepo Repositorio de existencias por sucursal
+     * @param recomendaciones Servicio de recomendaciones, que registra los préstamos asignados
+     * @param activos        Vista en memoria de los préstamos activos por usuario
+     * @param cluster        Coordinación con los demás nodos, avisados de los préstamos asignados
+     */
+    public ReservaService(ReservaRepository reservaRepo,
+                          PrestamoRepository prestamoRepo,
+                          ExistenciaRepository existenciaRepo,
+                          RecomendacionesService recomendaciones,
+                          PrestamosActivosService activos,
+                          ClusterService cluster) {
+        this.reservaRepo = reservaRepo;
+        this.prestamoRepo = prestamoRepo;
+        this.existenciaRepo = existenciaRepo;
+        this.recomendaciones = recomendaciones;
+        this.activos = activos;
+        this.cluster = cluster;
+    }
+
+    /**
+     * Pone a un usuario en la cola de reservas de un libro.
+     *
+     * @param libro   Libro a reservar
+     * @param usuario Usuario que reserva
+     * @return Reserva creada
+     * @throws ResponseStatusException 409 si el libro está disponible o el usuario ya está en la cola
+     */
+    @Transactional
+    public Reserva reservar(Libro libro, Usuario usuario) {
+        if (existenciaRepo.existsByLibroIdAndDisponiblesGreaterThan(libro.getId(), 0)) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT,
+                    "El libro " + libro.getIsbn() + " está disponible; no requiere reserva");
+        }
+        if (reservaRepo.existsByLibroIdAndUsuarioIdAndEstado(libro.getId(), usuario.getId(), EstadoReserva.EN_ESPERA)) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT,
+                    "El usuario " + usuario.getNumeroCuenta() + " ya está en la cola del libro " + libro.getIsbn());
+        }
+        return reservaRepo.save(new Reserva(libro, usuario, LocalDateTime.now()));
+    }
+
+    /**
+     * Asigna el ejemplar de un préstamo recién devuelto a la reserva más antigua del libro,
+     * creando el nuevo préstamo con la misma sucursal. Debe llamarse dentro de la transacción
+     * que cierra el préstamo.
+     * <p>
+     * Cada reserva se bloquea antes de asignarla y se comprueba de nuevo que siga en espera, por si
+     * otra devolución simultánea o una cancelación la cambió mientras tanto. Si el usuario ya tiene el
+     * máximo de préstamos activos, su reserva sigue en espera y el ejemplar pasa a la siguiente.
+     *
+     * @param devuelto Préstamo que se acaba de cerrar
+     * @return true si el ejemplar se asignó a una reserva (y por tanto no vuelve a estar disponible)
+     */
+    public boolean despachar(Prestamo devuelto) {
+        Long libroId = devuelto.getLibro().getId();
+        for (Long reservaId : reservaRepo.findIdsByLibroIdAndEstado(libroId, EstadoReserva.EN_ESPERA)) {
+            Optional<Reserva> bloqueada = reservaRepo.findByIdForUpdate(reservaId);
+            if (bloqueada.isEmpty() || bloqueada.get().getEstado() != EstadoReserva.EN_ESPERA) {
+                continue;
+            }
+            Reserva reserva = bloqueada.get();
+            Usuario usuario = reserva.getUsuario();
+            try {
+                activos.reservarCupo(usuario.getNumeroCuenta());
+            } catch (ResponseStatusException limiteAlcanzado) {
+                continue;
+            }
+            asignar(reserva, devuelto);
+            return true;
+        }
+        return false;
+    }
+
+    private void asignar(Reserva reserva, Prestamo devuelto) {
+        Usuario usuario = reserva.getUsuario();
+        Long libroId = devuelto.getLibro().getId();
+        Prestamo prestamo = new Prestamo(devuelto.getLibro(), usuario, LocalDate.now(), null);
+        prestamo.setSucursal(devuelto.getSucursal());
+        prestamo = prestamoRepo.save(prestamo);
+        recomendaciones.registrar(usuario.getId(), libroId);
+        activos.registrarPrestamo(usuario.getNumeroCuenta(), prestamo.getId(), libroId);
+        cluster.publicar(ClusterService.Cambio.prestamo(prestamo.getId(), libroId,
+                usuario.getId(), usuario.getNumeroCuenta()));
+
+        LocalDateTime ahora = LocalDateTime.now();
+        reserva.setEstado(EstadoReserva.ASIGNADA);
+        reserva.setFechaAsignacion(ahora);
+        reserva.setPrestamoId(prestamo.getId());
+
+        long espera = Duration.between(reserva.getFechaSolicitud(), ahora).toSeconds();
+        asignadas.increment();
+        esperaTotalSegundos.add(espera);
+        esperaMaximaSegundos.accumulate(espera);
+    }
+
+    /**
+     * Cancela una reserva en espera.
+     *
+     * @param id ID de la reserva
+     * @return La reserva cancelada, o vacío si no existe
+     * @throws ResponseStatusException 409 si la reserva ya no está en espera
+     */
+    @Transactional
+    public Optional<Reserva> cancelar(Long id) {
+        return reservaRepo.findById(id).map(reserva -> {
+            if (reserva.getEstado() != EstadoReserva.EN_ESPERA) {
+                throw new ResponseStatusException(HttpStatus.CONFLICT,
+                        "La reserva " + id + " ya está " + reserva.getEstado());
+            }
+            reserva.setEstado(EstadoReserva.CANCELADA);
+            return reserva;
+        });
+    }
+
+    /**
+     * Devuelve la cola de reservas en espera de un libro.
+     *
+     * @param libroId ID del libro
+     * @return Reservas en espera, en orden de llegada
+     */
+    public List<Reserva> cola(Long libroId) {
+        return reservaRepo.findByLibroIdAndEstadoOrderByFechaSolicitudAscIdAsc(libroId, EstadoReserva.EN_ESPERA);
+    }
+
+    /**
+     * Devuelve el número de reservas en espera de un libro.
+     *
+     * @param libroId ID del libro
+     * @return Profundidad de la cola
+     */
+    public long profundidad(Long libroId) {
+        return reservaRepo.countByLibroIdAndEstado(libroId, EstadoReserva.EN_ESPERA);
+    }
+
+    /**
+     * Devuelve las reservas de un usuario.
+     *
+     * @param numeroCuenta Número de cuenta del usuario
+     * @return Reservas del usuario, de la más reciente a la más antigua
+     */
+    public List<Reserva> porCuenta(String numeroCuenta) {
+        return reservaRepo.findByUsuarioNumeroCuentaOrderByFechaSolicitudDesc(numeroCuenta);
+    }
+
+    /**
+     * Devuelve las métricas de las colas de reserva.
+     *
+     * @return Estadísticas de reservas
+     */
+    public EstadisticasDto estadisticas() {
+        long totalAsignadas = asignadas.sum();
+        double esperaPromedio = totalAsignadas == 0 ? 0 : (double) esperaTotalSegundos.sum() / totalAsignadas;
+        return new EstadisticasDto(reservaRepo.countByEstado(EstadoReserva.EN_ESPERA), totalAsignadas,
+                esperaPromedio, esperaMaximaSegundos.get());
+    }
+
+    /**
+     * Métricas de las colas de reserva. Los tiempos de espera se acumulan desde el arranque de la aplicación.
+     */
+    public static class EstadisticasDto {
+        private final long enEspera;
+        private final long asignadas;
+        private final double esperaPromedioSegundos;
+        private final long esperaMaximaSegundos;
+
+        /**
+         * Constructor con todos los campos.
+         *
+         * @param enEspera               Reservas en espera en todas las colas
+         * @param asignadas              Reservas asignadas desde el arranque
+         * @param esperaPromedioSegundos Tiempo medio entre la solicitud y la asignación
+         * @param esperaMaximaSegundos   Tiempo máximo entre la solicitud y la asignación
+         */
+        public EstadisticasDto(long enEspera, long asignadas, double esperaPromedioSegundos, long esperaMaximaSegundos) {
+            this.enEspera = enEspera;
+            this.asignadas = asignadas;
+            this.esperaPromedioSegundos = esperaPromedioSegundos;
+            this.esperaMaximaSegundos = esperaMaximaSegundos;
+        }
+
+        /**
+         * @return Reservas en espera en todas las colas
+         */
+        public long getEnEspera() {
+            return enEspera;
+        }
+
+        /**
+         * @return Reservas asignadas desde el arranque
+         */
+        public long getAsignadas() {
+            return asignadas;
+        }
+
+        /**
+         * @return Tiempo medio de espera en segundos
+         */
+        public double getEsperaPromedioSegundos() {
+            return esperaPromedioSegundos;
+        }
+
+        /**
+         * @return Tiempo máximo de espera en segundos
+         */
+        public long getEsperaMaximaSegundos() {
+            return esperaMaximaSegundos;
+        }
+    }
+}
@@ -0,0 +1,431 @@
+package com.biblios.biblionet.service;
+
+import com.biblios.biblionet.model.Usuario;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.PersistenceException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Servicio que sincroniza los usuarios con el fichero de cuentas exportado por el registro escolar.
+ * <p>
+ * El fichero (CSV con las columnas número de cuenta y nombre, con cabecera opcional) se lee línea a línea.
+ * Los usuarios existentes se cargan con una sola consulta JDBC como un mapa número de cuenta → (ID, hash
+ * del nombre), sin crear entidades, y cada línea se compara con ese mapa: las cuentas nuevas se insertan
+ * y las que cambian de nombre se actualizan. Los cambios se aplican por lotes, cada uno en su propia
+ * transacción: las inserciones con {@link EntityManager#persist} agrupadas por Hibernate en sentencias
+ * JDBC por lotes (para seguir usando el generador de IDs de la entidad) y las actualizaciones con
+ * {@link JdbcTemplate#batchUpdate}. Si un lote falla, se repite fila a fila para rechazar solo las
+ * líneas que fallan. Las cuentas que no aparecen en el fichero no se eliminan, porque pueden tener
+ * préstamos; solo se informa de cuántas son.
+ * <p>
+ * La cabecera se reconoce por los nombres de columna (número de cuenta, cuenta, nombre...), y se ignora
+ * la marca de orden de bytes que algunas hojas de cálculo añaden al exportar en UTF-8.
+ */
+@Service
+public class SincronizacionUsuariosService {
+
+    private static final Logger log = LoggerFactory.getLogger(SincronizacionUsuariosService.class);
+    private static final int MAX_ERRORES_INFORMADOS = 20;
+    private static final int LONGITUD_CUENTA = 15;
+    private static final int LONGITUD_NOMBRE = 100;
+    private static final char BOM = '\uFEFF';
+    private static final Set<String> COLUMNAS_CUENTA =
+            Set.of("cuenta", "numerocuenta", "numerodecuenta", "numcuenta", "nocuenta", "ncuenta");
+    private static final Pattern DIACRITICOS = Pattern.compile("\\p{M}+");
+    private static final Pattern NO_ALFANUMERICOS = Pattern.compile("[^a-z0-9]");
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate transacciones;
+    private final AutocompletadoService autocompletado;
+    private final ClusterService cluster;
+    private final int tamanoLote;
+
+    /**
+     * Constructor con inyección de dependencias.
+     *
+     * @param jdbc           Plantilla JDBC para la lectura de cuentas y las actualizaciones por lotes
+     * @param transacciones  Plantilla para ejecutar cada lote en su propia transacción
+     * @param autocompletado Servicio de autocompletado, actualizado con las cuentas nuevas
+     * @param cluster        Coordinación con los demás nodos, avisados de cada usuario creado
+     * @param tamanoLote     Cambios aplicados por transacción
+     */
+    public SincronizacionUsuariosService(JdbcTemplate jdbc,
+                                         TransactionTemplate transacciones,
+                                         AutocompletadoService autocompletado,
+                                         ClusterService cluster,
+                                         @Value("${biblionet.sincronizacion.lote:1000}") int tamanoLote) {
+        this.jdbc = jdbc;
+        this.transacciones = transacciones;
+        this.autocompletado = autocompletado;
+        this.cluster = cluster;
+        this.tamanoLote = tamanoLote;
+    }
+
+    /**
+     * Sincroniza los usuarios con el fichero recibido.
+     *
+     * @param entrada Contenido del fichero en UTF-8
+     * @return Resumen de la sincronización
+     * @throws IOException si falla la lectura del fichero
+     */
+    public ResultadoDto sincronizar(InputStream entrada) throws IOException {
+        long inicio = System.nanoTime();
+        Map<String, Existente> existentes = new HashMap<>();
+        jdbc.query("SELECT id, numero_cuenta, nombre FROM usuarios", fila -> {
+            existentes.put(fila.getString(2), new Existente(fila.getLong(1), hash(fila.getString(3))));
+        });
+
+        Progreso progreso = new Progreso();
+        Set<String> vistas = new HashSet<>();
+        List<Pendiente> lote = new ArrayList<>(tamanoLote);
+
+        try (BufferedReader lector = new BufferedReader(new InputStreamReader(entrada, StandardCharsets.UTF_8))) {
+            String linea;
+            int numero = 0;
+            char separador = 0;
+            while ((linea = lector.readLine()) != null) {
+                numero++;
+                if (numero == 1 && !linea.isEmpty() && linea.charAt(0) == BOM) {
+                    linea = linea.substring(1);
+                }
+                if (linea.isBlank()) {
+                    continue;
+                }
+                if (separador == 0) {
+                    separador = linea.indexOf(';') >= 0 && linea.indexOf(',') < 0 ? ';' : ',';
+                    if (esCabecera(campos(linea, separador))) {
+                        continue;
+                    }
+                }
+                progreso.leidas++;
+
+                List<String> campos = campos(linea, separador);
+                String cuenta = campos.get(0).trim();
+                String nombre = campos.size() > 1 ? campos.get(1).trim() : "";
+                String error = validar(cuenta, nombre, campos.size());
+                if (error == null && !vistas.add(cuenta)) {
+                    error = "número de cuenta repetido en el fichero";
+                }
+                if (error != null) {
+                    progreso.rechazar("Línea " + numero + ": " + error, 1);
+                    continue;
+                }
+
+                Existente existente = existentes.get(cuenta);
+                if (existente == null) {
+                    lote.add(new Pendiente(numero, cuenta, nombre, null));
+                } else if (existente.hashNombre != hash(nombre)) {
+                    lote.add(new Pendiente(numero, cuenta, nombre, existente.id));
+                } else {
+                    progreso.sinCambios++;
+                }
+                if (lote.size() >= tamanoLote) {
+                    aplicarLote(lote, progreso);
+                }
+            }
+        }
+        aplicarLote(lote, progreso);
+
+        int ausentes = 0;
+        for (String cuenta : existentes.keySet()) {
+            if (!vistas.contains(cuenta)) {
+                ausentes++;
+            }
+        }
+        long milisegundos = (System.nanoTime() - inicio) / 1_000_000;
+        double filasPorSegundo = milisegundos == 0 ? progreso.leidas : progreso.leidas * 1000.0 / milisegundos;
+        log.info("Sincronización de usuarios: {} líneas, {} insertados, {} actualizados, {} rechazados en {} ms",
+                progreso.leidas, progreso.insertados, progreso.actualizados, progreso.rechazados, milisegundos);
+        return new ResultadoDto(progreso.leidas, progreso.insertados, progreso.actualizados, progreso.sinCambios,
+                ausentes, progreso.rechazados, progreso.errores, milisegundos, filasPorSegundo);
+    }
+
+    /**
+     * Aplica un lote en una transacción. Si falla, lo repite fila a fila, cada una en su propia transacción,
+     * para que una fila errónea (por ejemplo, una cuenta creada por otra vía mientras tanto) no descarte
+     * las demás.
+     */
+    private void aplicarLote(List<Pendiente> lote, Progreso progreso) {
+        if (lote.isEmpty()) {
+            return;
+        }
+        try {
+            aplicar(lote, progreso);
+        } catch (DataAccessException | PersistenceException e) {
+            if (lote.size() == 1) {
+                rechazar(lote.get(0), e, progreso);
+            } else {
+                log.warn("Lote de sincronización de usuarios fallido; se repite fila a fila", e);
+                for (Pendiente pendiente : lote) {
+                    try {
+                        aplicar(List.of(pendiente), progreso);
+                    } catch (DataAccessException | PersistenceException errorFila) {
+                        rechazar(pendiente, errorFila, progreso);
+                    }
+                }
+            }
+        } finally {
+            lote.clear();
+        }
+    }
+
+    private void aplicar(List<Pendiente> lote, Progreso progreso) {
+        // Entidades nuevas en cada intento: las de un intento fallido conservan el ID asignado al persistirlas.
+        List<Usuario> inserciones = new ArrayList<>();
+        List<Object[]> actualizaciones = new ArrayList<>();
+        for (Pendiente pendiente : lote) {
+            if (pendiente.id() == null) {
+                inserciones.add(new Usuario(pendiente.nombre(), pendiente.cuenta()));
+            } else {
+                actualizaciones.add(new Object[] { pendiente.nombre(), pendiente.id() });
+            }
+        }
+        transacciones.executeWithoutResult(estado -> {
+            for (Usuario usuario : inserciones) {
+                entityManager.persist(usuario);
+            }
+            entityManager.flush();
+            entityManager.clear();
+            if (!actualizaciones.isEmpty()) {
+                jdbc.batchUpdate("UPDATE usuarios SET nombre = ? WHERE id = ?", actualizaciones);
+            }
+        });
+        progreso.insertados += inserciones.size();
+        progreso.actualizados += actualizaciones.size();
+        for (Usuario usuario : inserciones) {
+            autocompletado.agregarUsuario(usuario);
+            cluster.publicar(ClusterService.Cambio.usuario(usuario.getId()));
+        }
+    }
+
+    private static void rechazar(Pendiente pendiente, RuntimeException error, Progreso progreso) {
+        progreso.rechazar("Línea " + pendiente.linea() + ": "
+                + NestedExceptionUtils.getMostSpecificCause(error).getMessage(), 1);
+    }
+
+    /**
+     * Indica si la primera línea del fichero es la cabecera: su primera columna se llama como el número
+     * de cuenta o su segunda columna es el nombre, sin distinguir mayúsculas, acentos ni separadores.
+     */
+    private static boolean esCabecera(List<String> campos) {
+        String primera = nombreColumna(campos.get(0));
+        return COLUMNAS_CUENTA.contains(primera) || primera.startsWith("numerocuenta")
+                || (campos.size() > 1 && nombreColumna(campos.get(1)).startsWith("nombre"));
+    }
+
+    private static String nombreColumna(String campo) {
+        String sinAcentos = DIACRITICOS.matcher(Normalizer.normalize(campo, Normalizer.Form.NFD)).replaceAll("");
+        return NO_ALFANUMERICOS.matcher(sinAcentos.toLowerCase()).replaceAll("");
+    }
+
+    private static String validar(String cuenta, String nombre, int columnas) {
+        if (columnas < 2) {
+            return "se esperaban las columnas número de cuenta y nombre";
+        }
+        if (cuenta.isEmpty() || cuenta.length() > LONGITUD_CUENTA) {
+            return "número de cuenta vacío o de más de " + LONGITUD_CUENTA + " caracteres";
+        }
+        if (nombre.isEmpty() || nombre.length() > LONGITUD_NOMBRE) {
+            return "nombre vacío o de más de " + LONGITUD_NOMBRE + " caracteres";
+        }
+        return null;
+    }
+
+    /**
+     * Divide una línea CSV en campos. Admite campos entre comillas dobles con comillas escapadas ("").
+     */
+    private static List<String> campos(String linea, char separador) {
+        List<String> campos = new ArrayList<>(2);
+        StringBuilder campo = new StringBuilder();
+        boolean entreComillas = false;
+        for (int i = 0; i < linea.length(); i++) {
+            char c = linea.charAt(i);
+            if (entreComillas) {
+                if (c == '"' && i + 1 < linea.length() && linea.charAt(i + 1) == '"') {
+                    campo.append('"');
+                    i++;
+                } else if (c == '"') {
+                    entreComillas = false;
+                } else {
+                    campo.append(c);
+                }
+            } else if (c == '"') {
+                entreComillas = true;
+            } else if (c == separador) {
+                campos.add(campo.toString());
+                campo.setLength(0);
+            } else {
+                campo.append(c);
+            }
+        }
+        campos.add(campo.toString());
+        return campos;
+    }
+
+    /**
+     * Hash FNV-1a de 64 bits del nombre, para comparar sin guardar los nombres existentes.
+     */
+    private static long hash(String texto) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < texto.length(); i++) {
+            hash ^= texto.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private record Existente(long id, long hashNombre) { }
+
+    /**
+     * Cambio pendiente de aplicar: inserción si {@code id} es null, o cambio de nombre del usuario {@code id}.
+     */
+    private record Pendiente(int linea, String cuenta, String nombre, Long id) { }
+
+    /**
+     * Contadores acumulados durante una sincronización.
+     */
+    private static final class Progreso {
+        int leidas;
+        int insertados;
+        int actualizados;
+        int sinCambios;
+        int rechazados;
+        final List<String> errores = new ArrayList<>();
+
+        void rechazar(String error, int filas) {
+            rechazados += filas;
+            if (errores.size() < MAX_ERRORES_INFORMADOS) {
+                errores.add(error);
+            }
+        }
+    }
+
+    /**
+     * Resumen de una sincronización de usuarios.
+     */
+    public static class ResultadoDto {
+        private final int leidas;
+        private final int insertados;
+        private final int actualizados;
+        private final int sinCambios;
+        private final int ausentes;
+        private final int rechazados;
+        private final List<String> errores;
+        private final long milisegundos;
+        private final double filasPorSegundo;
+
+        /**
+         * Constructor con todos los campos.
+         *
+         * @param leidas          Líneas de datos leídas
+         * @param insertados      Usuarios nuevos
+         * @param actualizados    Usuarios con el nombre actualizado
+         * @param sinCambios      Usuarios que ya estaban al día
+         * @param ausentes        Usuarios existentes que no aparecen en el fichero
+         * @param rechazados      Líneas no aplicadas por ser inválidas o por fallar su lote
+         * @param errores         Primeros errores encontrados
+         * @param milisegundos    Duración de la sincronización
+         * @param filasPorSegundo Líneas procesadas por segundo
+         */
+        public ResultadoDto(int leidas, int insertados, int actualizados, int sinCambios, int ausentes,
+                            int rechazados, List<String> errores, long milisegundos, double filasPorSegundo) {
+            this.leidas = leidas;
+            this.insertados = insertados;
+            this.actualizados = actualizados;
+            this.sinCambios = sinCambios;
+            this.ausentes = ausentes;
+            this.rechazados = rechazados;
+            this.errores = errores;
+            this.milisegundos = milisegundos;
+            this.filasPorSegundo = filasPorSegundo;
+        }
+
+        /**
+         * @return Líneas de datos leídas
+         */
+        public int getLeidas() {
+            return leidas;
+        }
+
+        /**
+         * @return Usuarios nuevos
+         */
+        public int getInsertados() {
+            return insertados;
+        }
+
+        /**
+         * @return Usuarios con el nombre actualizado
+         */
+        public int getActualizados() {
+            return actualizados;
+        }
+
+        /**
+         * @return Usuarios que ya estaban al día
+         */
+        public int getSinCambios() {
+            return sinCambios;
+        }
+
+        /**
+         * @return Usuarios existentes que no aparecen en el fichero
+         */
+        public int getAusentes() {
+            return ausentes;
+        }
+
+        /**
+         * @return Líneas no aplicadas por ser inválidas o por fallar su lote
+         */
+        public int getRechazados() {
+            return rechazados;
+        }
+
+        /**
+         * @return Primeros errores encontrados
+         */
+        public List<String> getErrores() {
+            return errores;
+        }
+
+        /**
+         * @return Duración de la sincronización en milisegundos
+         */
+        public long getMilisegundos() {
+            return milisegundos;
+        }
+
+        /**
+         * @return Líneas procesadas por segundo
+         */
+        public double getFilasPorSegundo() {
+            return filasPorSegundo;
+        }
+    }
+}
@@ -0,0 +1,328 @@
+package com.biblios.biblionet.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Árbol de prefijos comprimido (radix tree) que asocia claves de texto normalizado con sugerencias
+ * ponderadas. Cada nodo guarda el peso máximo de su subárbol, lo que permite obtener las k mejores
+ * sugerencias de un prefijo con una búsqueda de primero-el-mejor sin recorrer todo el subárbol.
+ * <p>
+ * No es seguro para uso concurrente; la sincronización corresponde a quien lo utilice.
+ */
+class TriePrefijos {
+
+    private static final Nodo[] SIN_HIJOS = new Nodo[0];
+    private static final Entrada[] SIN_ENTRADAS = new Entrada[0];
+
+    /**
+     * Tamaños aproximados (en bytes) usados para estimar el consumo de memoria del árbol.
+     */
+    private static final int BYTES_NODO = 40;
+    private static final int BYTES_ARREGLO = 16;
+    private static final int BYTES_REFERENCIA = 4;
+    private static final int BYTES_ENTRADA = 56;
+
+    /**
+     * Sugerencia almacenada en un nodo: texto original, tipo y peso (número de veces que se ha agregado).
+     */
+    static final class Entrada {
+        final String texto;
+        final String tipo;
+        int peso;
+
+        Entrada(String texto, String tipo) {
+            this.texto = texto;
+            this.tipo = tipo;
+        }
+    }
+
+    private static final class Nodo {
+        char[] etiqueta;
+        Nodo[] hijos = SIN_HIJOS;
+        Entrada[] entradas = SIN_ENTRADAS;
+        int pesoMaximo;
+
+        Nodo(char[] etiqueta) {
+            this.etiqueta = etiqueta;
+        }
+    }
+
+    /**
+     * Elemento de la cola de búsqueda: un nodo pendiente de expandir o una entrada lista para emitirse.
+     */
+    private record Candidato(int peso, Nodo nodo, Entrada entrada) { }
+
+    private static final Comparator<Candidato> POR_PESO = Comparator
+            .comparingInt(Candidato::peso).reversed()
+            .thenComparing(c -> c.entrada() == null);
+
+    private final Nodo raiz = new Nodo(new char[0]);
+    private int nodos = 1;
+    private long caracteres;
+    private long bytesEntradas;
+    private int entradas;
+
+    /**
+     * Agrega una sugerencia bajo la clave dada. Si ya existe la misma sugerencia (texto y tipo)
+     * en esa clave, incrementa su peso.
+     *
+     * @param clave Clave normalizada
+     * @param texto Texto original a sugerir
+     * @param tipo  Tipo de la sugerencia
+     */
+    void agregar(String clave, String texto, String tipo) {
+        List<Nodo> camino = new ArrayList<>();
+        Nodo nodo = raiz;
+        camino.add(nodo);
+        int i = 0;
+        while (i < clave.length()) {
+            int pos = buscarHijo(nodo, clave.charAt(i));
+            if (pos < 0) {
+                Nodo nuevo = new Nodo(clave.substring(i).toCharArray());
+                insertarHijo(nodo, -(pos + 1), nuevo);
+                nodos++;
+                caracteres += nuevo.etiqueta.length;
+                nodo = nuevo;
+                camino.add(nodo);
+                break;
+            }
+            Nodo hijo = nodo.hijos[pos];
+            int comun = prefijoComun(hijo.etiqueta, clave, i);
+            if (comun < hijo.etiqueta.length) {
+                Nodo intermedio = new Nodo(Arrays.copyOf(hijo.etiqueta, comun));
+                hijo.etiqueta = Arrays.copyOfRange(hijo.etiqueta, comun, hijo.etiqueta.length);
+                intermedio.hijos = new Nodo[] { hijo };
+                intermedio.pesoMaximo = hijo.pesoMaximo;
+                nodo.hijos[pos] = intermedio;
+                nodos++;
+                hijo = intermedio;
+            }
+            nodo = hijo;
+            camino.add(nodo);
+            i += comun;
+        }
+
+        Entrada entrada = null;
+        for (Entrada existente : nodo.entradas) {
+            if (existente.texto.equals(texto) && existente.tipo.equals(tipo)) {
+                entrada = existente;
+                break;
+            }
+        }
+        if (entrada == null) {
+            entrada = new Entrada(texto, tipo);
+            nodo.entradas = Arrays.copyOf(nodo.entradas, nodo.entradas.length + 1);
+            nodo.entradas[nodo.entradas.length - 1] = entrada;
+            entradas++;
+            bytesEntradas += BYTES_ENTRADA + BYTES_REFERENCIA + 2L * texto.length();
+        }
+        entrada.peso++;
+
+        for (Nodo n : camino) {
+            if (n.pesoMaximo < entrada.peso) {
+                n.pesoMaximo = entrada.peso;
+            }
+        }
+    }
+
+    /**
+     * Resta uno al peso de una sugerencia bajo la clave dada y la elimina cuando llega a cero, junto con
+     * los nodos que quedan sin entradas ni hijos. Recalcula el peso máximo del camino.
+     *
+     * @param clave Clave normalizada
+     * @param texto Texto original de la sugerencia
+     * @param tipo  Tipo de la sugerencia
+     * @return false si la sugerencia no estaba bajo esa clave
+     */
+    boolean eliminar(String clave, String texto, String tipo) {
+        List<Nodo> camino = new ArrayList<>();
+        Nodo nodo = raiz;
+        camino.add(nodo);
+        int i = 0;
+        while (i < clave.length()) {
+            int pos = buscarHijo(nodo, clave.charAt(i));
+            if (pos < 0) {
+                return false;
+            }
+            Nodo hijo = nodo.hijos[pos];
+            int comun = prefijoComun(hijo.etiqueta, clave, i);
+            if (comun < hijo.etiqueta.length) {
+                return false;
+            }
+            nodo = hijo;
+            camino.add(nodo);
+            i += comun;
+        }
+
+        int indice = -1;
+        for (int j = 0; j < nodo.entradas.length; j++) {
+            if (nodo.entradas[j].texto.equals(texto) && nodo.entradas[j].tipo.equals(tipo)) {
+                indice = j;
+                break;
+            }
+        }
+        if (indice < 0) {
+            return false;
+        }
+        Entrada entrada = nodo.entradas[indice];
+        entrada.peso--;
+        if (entrada.peso == 0) {
+            Entrada[] restantes = new Entrada[nodo.entradas.length - 1];
+            System.arraycopy(nodo.entradas, 0, restantes, 0, indice);
+            System.arraycopy(nodo.entradas, indice + 1, restantes, indice, restantes.length - indice);
+            nodo.entradas = restantes.length == 0 ? SIN_ENTRADAS : restantes;
+            entradas--;
+            bytesEntradas -= BYTES_ENTRADA + BYTES_REFERENCIA + 2L * texto.length();
+        }
+
+        for (int j = camino.size() - 1; j >= 0; j--) {
+            Nodo actual = camino.get(j);
+            if (j > 0 && actual.entradas.length == 0 && actual.hijos.length == 0) {
+                quitarHijo(camino.get(j - 1), actual);
+                nodos--;
+                caracteres -= actual.etiqueta.length;
+                continue;
+            }
+            int maximo = 0;
+            for (Entrada e : actual.entradas) {
+                maximo = Math.max(maximo, e.peso);
+            }
+            for (Nodo hijo : actual.hijos) {
+                maximo = Math.max(maximo, hijo.pesoMaximo);
+            }
+            actual.pesoMaximo = maximo;
+        }
+        return true;
+    }
+
+    /**
+     * Devuelve las k sugerencias de mayor peso cuya clave empieza por el prefijo dado,
+     * sin repetir el mismo texto y tipo aunque aparezca bajo varias claves.
+     *
+     * @param prefijo Prefijo normalizado
+     * @param k       Número máximo de sugerencias
+     * @return Sugerencias ordenadas de mayor a menor peso
+     */
+    List<Entrada> buscar(String prefijo, int k) {
+        Nodo nodo = raiz;
+        int i = 0;
+        while (i < prefijo.length()) {
+            int pos = buscarHijo(nodo, prefijo.charAt(i));
+            if (pos < 0) {
+                return List.of();
+            }
+            Nodo hijo = nodo.hijos[pos];
+            int comun = prefijoComun(hijo.etiqueta, prefijo, i);
+            if (i + comun < prefijo.length() && comun < hijo.etiqueta.length) {
+                return List.of();
+            }
+            nodo = hijo;
+            i += comun;
+        }
+
+        List<Entrada> resultado = new ArrayList<>(k);
+        Set<String> vistos = new HashSet<>();
+        PriorityQueue<Candidato> cola = new PriorityQueue<>(POR_PESO);
+        cola.add(new Candidato(nodo.pesoMaximo, nodo, null));
+        while (!cola.isEmpty() && resultado.size() < k) {
+            Candidato candidato = cola.poll();
+            if (candidato.entrada() != null) {
+                Entrada e = candidato.entrada();
+                if (vistos.add(e.tipo + '\u0000' + e.texto)) {
+                    resultado.add(e);
+                }
+                continue;
+            }
+            Nodo actual = candidato.nodo();
+            for (Entrada e : actual.entradas) {
+                cola.add(new Candidato(e.peso, null, e));
+            }
+            for (Nodo hijo : actual.hijos) {
+                cola.add(new Candidato(hijo.pesoMaximo, hijo, null));
+            }
+        }
+        return resultado;
+    }
+
+    /**
+     * @return Número de nodos del árbol
+     */
+    int getNodos() {
+        return nodos;
+    }
+
+    /**
+     * @return Número de entradas (pares clave-sugerencia) almacenadas
+     */
+    int getEntradas() {
+        return entradas;
+    }
+
+    /**
+     * @return Número total de caracteres en las etiquetas de las aristas
+     */
+    long getCaracteres() {
+        return caracteres;
+    }
+
+    /**
+     * Estima la memoria ocupada por el árbol a partir del número de nodos, caracteres y entradas.
+     *
+     * @return Bytes estimados
+     */
+    long getBytesEstimados() {
+        long bytesNodos = (long) nodos * (BYTES_NODO + 2L * BYTES_ARREGLO + BYTES_REFERENCIA);
+        return bytesNodos + 2 * caracteres + bytesEntradas;
+    }
+
+    private static int buscarHijo(Nodo nodo, char c) {
+        int bajo = 0;
+        int alto = nodo.hijos.length - 1;
+        while (bajo <= alto) {
+            int medio = (bajo + alto) >>> 1;
+            char actual = nodo.hijos[medio].etiqueta[0];
+            if (actual < c) {
+                bajo = medio + 1;
+            } else if (actual > c) {
+                alto = medio - 1;
+            } else {
+                return medio;
+            }
+        }
+        return -(bajo + 1);
+    }
+
+    private static void insertarHijo(Nodo nodo, int pos, Nodo hijo) {
+        Nodo[] hijos = new Nodo[nodo.hijos.length + 1];
+        System.arraycopy(nodo.hijos, 0, hijos, 0, pos);
+        hijos[pos] = hijo;
+        System.arraycopy(nodo.hijos, pos, hijos, pos + 1, nodo.hijos.length - pos);
+        nodo.hijos = hijos;
+    }
+
+    private static void quitarHijo(Nodo nodo, Nodo hijo) {
+        int pos = 0;
+        while (nodo.hijos[pos] != hijo) {
+            pos++;
+        }
+        Nodo[] hijos = nodo.hijos.length == 1 ? SIN_HIJOS : new Nodo[nodo.hijos.length - 1];
+        System.arraycopy(nodo.hijos, 0, hijos, 0, pos);
+        System.arraycopy(nodo.hijos, pos + 1, hijos, pos, nodo.hijos.length - pos - 1);
+        nodo.hijos = hijos;
+    }
+
+    private static int prefijoComun(char[] etiqueta, String clave, int desde) {
+        int max = Math.min(etiqueta.length, clave.length() - desde);
+        int i = 0;
+        while (i < max && etiqueta[i] == clave.charAt(desde + i)) {
+            i++;
+        }
+        return i;
+    }
+}
@@ -0,0 +1,84 @@
+package com.biblios.biblionet.service;
+
+import com.biblios.biblionet.service.AdmisionService.ClaseCoste;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AdmisionServiceTest {
+
+	/**
+	 * Una ficha cada 1000 s: durante la prueba no se recupera ninguna.
+	 */
+	private static final double SIN_RECUPERACION = 0.001;
+
+	@Test
+	void admiteLaRafagaYRechazaLaSiguienteConElTiempoDeEspera() {
+		AdmisionService admision = servicio(SIN_RECUPERACION, 3, 100, 100);
+
+		for (int i = 0; i < 3; i++) {
+			assertEquals(0, admision.admitir("cliente", ClaseCoste.OPERACION));
+		}
+		long espera = admision.admitir("cliente", ClaseCoste.OPERACION);
+		assertTrue(espera > 900_000_000_000L && espera <= 1_000_000_000_000L, "espera de ~1000 s: " + espera);
+
+		AdmisionService.EstadisticasDto estadisticas = admision.estadisticas().get(ClaseCoste.OPERACION);
+		assertEquals(3, estadisticas.getAdmitidas());
+		assertEquals(1, estadisticas.getRechazadasPorTasa());
+	}
+
+	@Test
+	void cadaClienteYClaseTieneSuPropioCubo() {
+		AdmisionService admision = servicio(SIN_RECUPERACION, 1, 100, 100);
+
+		assertEquals(0, admision.admitir("a", ClaseCoste.OPERACION));
+		assertTrue(admision.admitir("a", ClaseCoste.OPERACION) > 0);
+		assertEquals(0, admision.admitir("b", ClaseCoste.OPERACION));
+		assertEquals(0, admision.admitir("a", ClaseCoste.CONSULTA));
+	}
+
+	@Test
+	void limitaLosListadosConcurrentesEntreTodosLosClientes() {
+		AdmisionService admision = servicio(1_000_000, 1_000, 1, 100);
+
+		assertEquals(0, admision.admitir("a", ClaseCoste.LISTADO));
+		assertTrue(admision.admitir("b", ClaseCoste.LISTADO) > 0);
+		assertEquals(0, admision.admitir("b", ClaseCoste.OPERACION));
+
+		admision.finalizar(ClaseCoste.LISTADO);
+		assertEquals(0, admision.admitir("b", ClaseCoste.LISTADO));
+		assertEquals(1, admision.estadisticas().get(ClaseCoste.LISTADO).getRechazadasPorCarga());
+	}
+
+	@Test
+	void descartaLosCubosLlenosAlAlcanzarElMaximoDeClientes() throws InterruptedException {
+		// Un intervalo de 1 ns: el cubo vuelve a estar lleno casi de inmediato.
+		AdmisionService admision = servicio(1_000_000_000, 1, 100, 2);
+
+		admision.admitir("a", ClaseCoste.CONSULTA);
+		admision.admitir("b", ClaseCoste.CONSULTA);
+		Thread.sleep(1);
+		admision.admitir("c", ClaseCoste.CONSULTA);
+
+		assertEquals(1, admision.estadisticas().get(ClaseCoste.CONSULTA).getClientesActivos());
+	}
+
+	@Test
+	void laLimpiezaConservaLosCubosQueNoSeHanRecuperado() {
+		AdmisionService admision = servicio(SIN_RECUPERACION, 5, 100, 100);
+		admision.admitir("activo", ClaseCoste.CONSULTA);
+		admision.admitir("activo", ClaseCoste.OPERACION);
+
+		admision.limpiar();
+
+		assertEquals(1, admision.estadisticas().get(ClaseCoste.CONSULTA).getClientesActivos());
+		assertEquals(1, admision.estadisticas().get(ClaseCoste.OPERACION).getClientesActivos());
+	}
+
+	private static AdmisionService servicio(double porSegundo, int rafaga, int listadosConcurrentes,
+											int clientesMaximos) {
+		return new AdmisionService(porSegundo, rafaga, porSegundo, rafaga, porSegundo, rafaga,
+				listadosConcurrentes, clientesMaximos);
+	}
+}
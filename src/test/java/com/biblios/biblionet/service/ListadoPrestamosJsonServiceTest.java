@@ -0,0 +1,124 @@
+package com.biblios.biblionet.service;
+
+import com.biblios.biblionet.model.Libro;
+import com.biblios.biblionet.model.Prestamo;
+import com.biblios.biblionet.model.Usuario;
+import com.biblios.biblionet.repository.LibroRepository;
+import com.biblios.biblionet.repository.PrestamoRepository;
+import com.biblios.biblionet.repository.UsuarioRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SpringBootTest(properties = {
+		"spring.datasource.url=jdbc:h2:mem:listados;DB_CLOSE_DELAY=-1",
+		"biblionet.listados.concurrentes=1"
+})
+class ListadoPrestamosJsonServiceTest {
+
+	@Autowired
+	private ListadoPrestamosJsonService listados;
+
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	@Autowired
+	private LibroRepository libroRepo;
+
+	@Autowired
+	private UsuarioRepository usuarioRepo;
+
+	@Autowired
+	private PrestamoRepository prestamoRepo;
+
+	@AfterEach
+	void limpiarPeticion() {
+		RequestContextHolder.resetRequestAttributes();
+	}
+
+	@Test
+	void prestamoActivoSeEscribeIgualQueConJackson() throws Exception {
+		Prestamo prestamo = guardar("Cien años de \"soledad\" — 1ª ed.", "978-0001", LocalDate.of(1967, 5, 30),
+				"Pérez Ñúñez", "ACT-1", LocalDate.of(2026, 1, 15), null, "CENTRAL");
+
+		assertEquals(conJackson(prestamo), escribirDelUsuario(prestamo));
+	}
+
+	@Test
+	void prestamoDevueltoSinSucursalSeEscribeIgualQueConJackson() throws Exception {
+		Prestamo prestamo = guardar("Rayuela", "978-0002", LocalDate.of(1963, 6, 28),
+				"Ana", "DEV-1", LocalDate.of(2020, 3, 1), LocalDate.of(2020, 3, 20), null);
+
+		assertEquals(conJackson(prestamo), escribirDelUsuario(prestamo));
+	}
+
+	@Test
+	void camposNulosDelLibroSeEscribenIgualQueConJackson() throws Exception {
+		Prestamo prestamo = guardar("Sin ISBN", null, null, "Luis", "NUL-1", LocalDate.of(2024, 7, 2), null, null);
+
+		assertEquals(conJackson(prestamo), escribirDelUsuario(prestamo));
+	}
+
+	@Test
+	void elHuecoSeLiberaAlCompletarLaPeticionAunqueNoSeEscriba() throws Exception {
+		MockHttpServletRequest peticion = new MockHttpServletRequest();
+		RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(peticion));
+		listados.limitar(salida -> { });
+		assertThrows(ResponseStatusException.class, () -> listados.limitar(salida -> { }));
+
+		listados.liberadorAsincrono().afterCompletion(new ServletWebRequest(peticion), () -> null);
+
+		RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+		listados.limitar(salida -> { }).writeTo(OutputStream.nullOutputStream());
+	}
+
+	@Test
+	void elHuecoSoloSeLiberaUnaVez() throws Exception {
+		MockHttpServletRequest peticion = new MockHttpServletRequest();
+		RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(peticion));
+		StreamingResponseBody cuerpo = listados.limitar(salida -> { });
+		cuerpo.writeTo(OutputStream.nullOutputStream());
+		listados.liberadorAsincrono().afterCompletion(new ServletWebRequest(peticion), () -> null);
+
+		RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+		StreamingResponseBody siguiente = listados.limitar(salida -> { });
+		assertThrows(ResponseStatusException.class, () -> listados.limitar(salida -> { }));
+		siguiente.writeTo(OutputStream.nullOutputStream());
+	}
+
+	private Prestamo guardar(String titulo, String isbn, LocalDate fechaPublicacion, String nombre, String cuenta,
+							 LocalDate fechaPrestamo, LocalDate fechaDevolucion, String sucursal) {
+		Libro libro = libroRepo.save(new Libro(titulo, "Autor", isbn, fechaPublicacion, "Novela"));
+		Usuario usuario = usuarioRepo.save(new Usuario(nombre, cuenta));
+		Prestamo prestamo = new Prestamo(libro, usuario, fechaPrestamo, fechaDevolucion);
+		prestamo.setSucursal(sucursal);
+		return prestamoRepo.save(prestamo);
+	}
+
+	private String conJackson(Prestamo guardado) throws Exception {
+		Prestamo leido = prestamoRepo.findById(guardado.getId()).orElseThrow();
+		return "[" + objectMapper.writeValueAsString(leido) + "]";
+	}
+
+	private String escribirDelUsuario(Prestamo prestamo) throws Exception {
+		ByteArrayOutputStream salida = new ByteArrayOutputStream();
+		listados.escribirPorUsuario(prestamo.getUsuario().getId(), false, salida);
+		return salida.toString(StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,87 @@
+package com.biblios.biblionet.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MapaLongIntTest {
+
+	@Test
+	void sumaInsertandoLasClavesNuevas() {
+		MapaLongInt mapa = new MapaLongInt(4);
+		assertEquals(3, mapa.sumar(7, 3));
+		assertEquals(5, mapa.sumar(7, 2));
+		assertEquals(1, mapa.sumar(-7, 1));
+
+		assertEquals(5, mapa.get(7));
+		assertEquals(1, mapa.get(-7));
+		assertEquals(0, mapa.get(8));
+		assertTrue(mapa.contiene(7));
+		assertFalse(mapa.contiene(8));
+		assertEquals(2, mapa.tamano());
+	}
+
+	@Test
+	void laClaveCeroEstaReservada() {
+		MapaLongInt mapa = new MapaLongInt(4);
+		assertThrows(IllegalArgumentException.class, () -> mapa.sumar(0, 1));
+		assertFalse(mapa.contiene(0));
+	}
+
+	@Test
+	void creceConservandoLosValores() {
+		MapaLongInt mapa = new MapaLongInt(4);
+		long bytesIniciales = mapa.bytesEstimados();
+		for (long clave = 1; clave <= 1000; clave++) {
+			mapa.sumar(clave * 1024, (int) clave);
+		}
+		assertEquals(1000, mapa.tamano());
+		assertTrue(mapa.bytesEstimados() > bytesIniciales);
+		for (long clave = 1; clave <= 1000; clave++) {
+			assertEquals((int) clave, mapa.get(clave * 1024));
+		}
+	}
+
+	@Test
+	void eliminarMantieneAlcanzablesLasClavesDelMismoGrupo() {
+		Random aleatorio = new Random(42);
+		MapaLongInt mapa = new MapaLongInt(8);
+		Map<Long, Integer> esperado = new HashMap<>();
+		for (int i = 0; i < 20_000; i++) {
+			long clave = 1 + aleatorio.nextInt(500);
+			if (aleatorio.nextInt(3) == 0) {
+				mapa.eliminar(clave);
+				esperado.remove(clave);
+			} else {
+				mapa.sumar(clave, 1);
+				esperado.merge(clave, 1, Integer::sum);
+			}
+		}
+		assertEquals(esperado.size(), mapa.tamano());
+		for (long clave = 1; clave <= 500; clave++) {
+			assertEquals((int) esperado.getOrDefault(clave, 0), mapa.get(clave));
+			assertEquals(esperado.containsKey(clave), mapa.contiene(clave));
+		}
+	}
+
+	@Test
+	void recorreTodasLasEntradasYEncuentraLaDeMenorValor() {
+		MapaLongInt mapa = new MapaLongInt(4);
+		assertEquals(0, mapa.claveMinima());
+		mapa.sumar(10, 5);
+		mapa.sumar(20, 2);
+		mapa.sumar(30, 9);
+
+		Map<Long, Integer> recorridas = new HashMap<>();
+		mapa.recorrer(recorridas::put);
+		assertEquals(Map.of(10L, 5, 20L, 2, 30L, 9), recorridas);
+		assertEquals(20, mapa.claveMinima());
+	}
+}
@@ -0,0 +1,57 @@
+package com.biblios.biblionet.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MapaLongObjetoTest {
+
+	@Test
+	void creaElValorSoloLaPrimeraVez() {
+		MapaLongObjeto<List<String>> mapa = new MapaLongObjeto<>(4);
+		int[] creados = { 0 };
+		List<String> primero = mapa.obtenerOCrear(5, clave -> {
+			creados[0]++;
+			return new ArrayList<>();
+		});
+		List<String> segundo = mapa.obtenerOCrear(5, clave -> {
+			creados[0]++;
+			return new ArrayList<>();
+		});
+
+		assertSame(primero, segundo);
+		assertSame(primero, mapa.get(5));
+		assertEquals(1, creados[0]);
+		assertEquals(1, mapa.tamano());
+		assertNull(mapa.get(6));
+	}
+
+	@Test
+	void laClaveCeroEstaReservada() {
+		MapaLongObjeto<String> mapa = new MapaLongObjeto<>(4);
+		assertThrows(IllegalArgumentException.class, () -> mapa.obtenerOCrear(0, clave -> "cero"));
+		assertNull(mapa.get(0));
+	}
+
+	@Test
+	void creceConservandoLosValores() {
+		MapaLongObjeto<String> mapa = new MapaLongObjeto<>(4);
+		for (long clave = 1; clave <= 1000; clave++) {
+			mapa.obtenerOCrear(clave * 1024, Long::toString);
+		}
+		assertEquals(1000, mapa.tamano());
+		for (long clave = 1; clave <= 1000; clave++) {
+			assertEquals(Long.toString(clave * 1024), mapa.get(clave * 1024));
+		}
+
+		long[] suma = { 0 };
+		mapa.recorrerValores(valor -> suma[0] += Long.parseLong(valor));
+		assertEquals(1024L * 1000 * 1001 / 2, suma[0]);
+	}
+}
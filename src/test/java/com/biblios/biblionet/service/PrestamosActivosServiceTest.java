@@ -0,0 +1,54 @@
+package com.biblios.biblionet.service;
+
+import com.biblios.biblionet.service.PrestamosActivosService.Activos;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class PrestamosActivosServiceTest {
+
+	private static final Activos VACIO = new Activos(new long[0], new long[0], 0, 0);
+
+	@Test
+	void conMantieneLosPrestamosOrdenadosConSuLibro() {
+		Activos activos = VACIO.con(30, 300, 1).con(10, 100, 2).con(20, 200, 3);
+
+		assertArrayEquals(new long[] { 10, 20, 30 }, activos.prestamos);
+		assertArrayEquals(new long[] { 100, 200, 300 }, activos.libros);
+		assertEquals(3, activos.version);
+	}
+
+	@Test
+	void sinQuitaElPrestamoYSuLibro() {
+		Activos activos = VACIO.con(10, 100, 1).con(20, 200, 2).con(30, 300, 3).sin(20, 4);
+
+		assertArrayEquals(new long[] { 10, 30 }, activos.prestamos);
+		assertArrayEquals(new long[] { 100, 300 }, activos.libros);
+		assertEquals(4, activos.version);
+	}
+
+	@Test
+	void repetirUnCambioNoAlteraNada() {
+		Activos activos = VACIO.con(10, 100, 1);
+
+		assertSame(activos, activos.con(10, 100, 2));
+		assertSame(activos, activos.sin(99, 3));
+	}
+
+	@Test
+	void losCambiosNoModificanLaInstanciaOriginal() {
+		Activos original = new Activos(new long[] { 10 }, new long[] { 100 }, 2, 7);
+
+		Activos conOtro = original.con(5, 50, 8);
+		Activos sinNinguno = original.sin(10, 9);
+
+		assertArrayEquals(new long[] { 10 }, original.prestamos);
+		assertEquals(7, original.version);
+		assertArrayEquals(new long[] { 5, 10 }, conOtro.prestamos);
+		assertEquals(2, conOtro.pendientes);
+		assertArrayEquals(new long[0], sinNinguno.prestamos);
+		assertEquals(2, sinNinguno.pendientes);
+	}
+}
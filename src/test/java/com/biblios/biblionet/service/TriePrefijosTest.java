@@ -0,0 +1,108 @@
+package com.biblios.biblionet.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TriePrefijosTest {
+
+	@Test
+	void buscaPorPrefijoOrdenandoPorPeso() {
+		TriePrefijos trie = new TriePrefijos();
+		trie.agregar("cien anos", "Cien años", "TITULO");
+		trie.agregar("cielo", "Cielo", "TITULO");
+		trie.agregar("cielo", "Cielo", "TITULO");
+		trie.agregar("casa", "Casa", "TITULO");
+
+		assertEquals(List.of("Cielo", "Cien años"), textos(trie.buscar("cie", 10)));
+		assertEquals(List.of("Cielo"), textos(trie.buscar("ci", 1)));
+		assertEquals(List.of("Cien años"), textos(trie.buscar("cien a", 10)));
+		assertTrue(trie.buscar("cx", 10).isEmpty());
+		assertTrue(trie.buscar("cielos", 10).isEmpty());
+	}
+
+	@Test
+	void noRepiteLaMismaSugerenciaBajoVariasClaves() {
+		TriePrefijos trie = new TriePrefijos();
+		trie.agregar("la casa verde", "La casa verde", "TITULO");
+		trie.agregar("casa verde", "La casa verde", "TITULO");
+		trie.agregar("verde", "La casa verde", "TITULO");
+		trie.agregar("la casa verde", "La casa verde", "AUTOR");
+
+		assertEquals(2, trie.buscar("", 10).size());
+		assertEquals(List.of("La casa verde"), textos(trie.buscar("casa", 10)));
+		assertEquals(List.of("La casa verde"), textos(trie.buscar("verde", 10)));
+		assertEquals(2, trie.buscar("la", 10).size());
+	}
+
+	@Test
+	void eliminarRestaPesoYQuitaLaEntradaAlLlegarACero() {
+		TriePrefijos trie = new TriePrefijos();
+		trie.agregar("rayuela", "Rayuela", "TITULO");
+		trie.agregar("rayuela", "Rayuela", "TITULO");
+		trie.agregar("rayo", "Rayo", "TITULO");
+		int nodos = trie.getNodos();
+
+		assertTrue(trie.eliminar("rayuela", "Rayuela", "TITULO"));
+		assertEquals(List.of("Rayo", "Rayuela"), textos(trie.buscar("ray", 10)).stream().sorted().toList());
+		assertEquals(1, trie.buscar("rayuela", 1).get(0).peso);
+
+		assertTrue(trie.eliminar("rayuela", "Rayuela", "TITULO"));
+		assertEquals(List.of("Rayo"), textos(trie.buscar("ray", 10)));
+		assertEquals(1, trie.getEntradas());
+		assertTrue(trie.getNodos() < nodos);
+	}
+
+	@Test
+	void trasEliminarSeSigueOrdenandoPorPeso() {
+		TriePrefijos trie = new TriePrefijos();
+		for (int i = 0; i < 3; i++) {
+			trie.agregar("borges", "Borges", "AUTOR");
+		}
+		trie.agregar("bolano", "Bolaño", "AUTOR");
+		trie.agregar("bolano", "Bolaño", "AUTOR");
+		for (int i = 0; i < 3; i++) {
+			trie.eliminar("borges", "Borges", "AUTOR");
+		}
+		trie.agregar("bioy", "Bioy", "AUTOR");
+
+		assertEquals(List.of("Bolaño", "Bioy"), textos(trie.buscar("b", 10)));
+	}
+
+	@Test
+	void eliminarUnaSugerenciaAusenteNoCambiaNada() {
+		TriePrefijos trie = new TriePrefijos();
+		trie.agregar("ficciones", "Ficciones", "TITULO");
+		long bytes = trie.getBytesEstimados();
+
+		assertFalse(trie.eliminar("ficcion", "Ficciones", "TITULO"));
+		assertFalse(trie.eliminar("ficciones", "Ficciones", "AUTOR"));
+		assertFalse(trie.eliminar("otra", "Otra", "TITULO"));
+		assertEquals(bytes, trie.getBytesEstimados());
+		assertEquals(1, trie.getEntradas());
+	}
+
+	@Test
+	void laEstimacionDeMemoriaVuelveAlEstadoInicialAlVaciarse() {
+		TriePrefijos trie = new TriePrefijos();
+		long vacio = trie.getBytesEstimados();
+		trie.agregar("el aleph", "El Aleph", "TITULO");
+		trie.agregar("el tunel", "El túnel", "TITULO");
+		assertTrue(trie.getBytesEstimados() > vacio);
+
+		trie.eliminar("el aleph", "El Aleph", "TITULO");
+		trie.eliminar("el tunel", "El túnel", "TITULO");
+		assertEquals(0, trie.getEntradas());
+		assertEquals(1, trie.getNodos());
+		assertEquals(vacio, trie.getBytesEstimados());
+		assertTrue(trie.buscar("el", 10).isEmpty());
+	}
+
+	private static List<String> textos(List<TriePrefijos.Entrada> entradas) {
+		return entradas.stream().map(e -> e.texto).toList();
+	}
+}